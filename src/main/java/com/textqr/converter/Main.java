@@ -3,9 +3,14 @@ package com.textqr.converter;
 /**
  * Main launcher class to avoid JavaFX module system issues with shaded JAR.
  * This class serves as a wrapper to properly launch the JavaFX application.
+ * CLI runs are dispatched before any JavaFX class is loaded.
  */
 public class Main {
     public static void main(String[] args) {
-        TextQRConverterApp.main(args);
+        if (args.length > 0 && args[0].equals("--cli")) {
+            TextQRConverterCli.main(args);
+        } else {
+            TextQRConverterApp.main(args);
+        }
     }
 }
\ No newline at end of file
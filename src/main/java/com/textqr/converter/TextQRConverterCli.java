@@ -0,0 +1,820 @@
+package com.textqr.converter;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.core.DecodeVerifier;
+import com.textqr.converter.core.QRGenerator;
+import com.textqr.converter.core.QRLayoutOptimizer;
+import com.textqr.converter.core.SessionStore;
+import com.textqr.converter.core.TextInputHandler;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.ErasureCoder;
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.PipelineMetrics;
+import com.textqr.converter.util.SequenceRanges;
+import com.textqr.converter.util.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Command line entry point. Kept free of JavaFX so CLI runs never load the UI toolkit.
+ */
+public class TextQRConverterCli {
+    private static final Logger logger = LoggerFactory.getLogger(TextQRConverterCli.class);
+    
+    // "-" reads the input from stdin, or writes a single stream to stdout as the output
+    private static final String STANDARD_STREAM = "-";
+    // --verify=capture also decodes each code after a simulated camera capture
+    private static final String VERIFY_CAPTURE = "capture";
+    
+    enum StreamFormat {
+        ZIP,
+        PNG,
+        NDJSON
+    }
+    
+    private final QRGenerator qrGenerator = new QRGenerator();
+    private final TextInputHandler textInputHandler = new TextInputHandler();
+    // Earlier version of the input that the receiver already holds; only the difference is sent
+    private final Path deltaBase;
+    // Reed-Solomon parity symbols per group of data chunks, 0 for none
+    private final int dataShards;
+    private final int parityShards;
+    // Generated sessions are persisted here when set
+    private final SessionStore store;
+    // Sequence ranges to re-send, e.g. "37,112-118"; null exports the whole session
+    private final String resend;
+    // Stored sessions being exported, whose matrices are read back instead of re-encoded
+    private final Map<String, SessionStore.StoredSession> storedSessions = new ConcurrentHashMap<>();
+    // Decodes each written code back while the rest are generated; null when not verifying
+    private final DecodeVerifier verifier;
+    
+    TextQRConverterCli() {
+        this(null, 0, 0, null, null, false, false);
+    }
+    
+    TextQRConverterCli(Path deltaBase, int dataShards, int parityShards, SessionStore store, String resend,
+                       boolean verify, boolean simulateCapture) {
+        this.deltaBase = deltaBase;
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+        this.store = store;
+        this.resend = resend;
+        this.verifier = verify
+            ? new DecodeVerifier(qrGenerator, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), simulateCapture)
+            : null;
+    }
+    
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(args);
+        } catch (Exception e) {
+            logger.error("Error in CLI mode", e);
+            System.err.println("Error: " + e.getMessage());
+            exitCode = 1;
+        }
+        
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+    
+    static int run(String[] args) throws Exception {
+        List<String> positional = positionalArguments(args);
+        if (positional.size() < 2) {
+            System.out.println("Usage: java -jar text-qr-converter.jar --cli <input>... <output-directory> [--compress | --log-compact] [--structured-append] [--stats] [--normalize [--collapse-whitespace] [--strip-ansi] [--strip-timestamps]] [--format=zip|png|ndjson] [--delta-base=<file>] [--parity=<k>:<m>] [--store=<dir>] [--resend=<ranges>] [--verify[=capture]]");
+            System.out.println("  <input> may be a file, a directory, a glob such as 'logs/*.log', @list-file with one input per line, or - for stdin");
+            System.out.println("  <input> may also be a stored session (.tqs), which is exported again without re-encoding");
+            System.out.println("  <output-directory> may be - to write a single zip, PNG or NDJSON stream to stdout");
+            System.out.println("  --delta-base sends only the changes against a file the receiver already has");
+            System.out.println("  --parity adds m Reed-Solomon parity codes per k data codes, e.g. --parity=10:2");
+            System.out.println("  --store keeps each generated session on disk so it can be reopened and exported later");
+            System.out.println("  --resend exports only the listed codes of a stored session, e.g. --resend=37,112-118");
+            System.out.println("  --verify decodes each written code back and re-encodes any that fail more robustly;");
+            System.out.println("    --verify=capture also requires them to survive a simulated blurred, downscaled capture");
+            return 1;
+        }
+        
+        String outputDir = positional.get(positional.size() - 1);
+        List<Path> inputs = resolveInputs(positional.subList(0, positional.size() - 1));
+        if (inputs.isEmpty()) {
+            System.err.println("Error: no input files matched");
+            return 1;
+        }
+        
+        PayloadCodec codec = hasOption(args, "--log-compact")
+            ? PayloadCodec.LOG_GZIP
+            : PayloadCodec.of(hasOption(args, "--compress"));
+        FrameFormat frameFormat = hasOption(args, "--structured-append")
+            ? FrameFormat.STRUCTURED_APPEND
+            : FrameFormat.JSON;
+        TextNormalizer normalizer = null;
+        if (hasOption(args, "--normalize")) {
+            normalizer = new TextNormalizer(
+                hasOption(args, "--collapse-whitespace"),
+                hasOption(args, "--strip-ansi"),
+                hasOption(args, "--strip-timestamps")
+            );
+        }
+        
+        boolean stats = hasOption(args, "--stats");
+        if (stats) {
+            PipelineMetrics.getInstance().registerMBean();
+        }
+        
+        String deltaBase = optionValue(args, "--delta-base=", null);
+        int dataShards = 0;
+        int parityShards = 0;
+        String parity = optionValue(args, "--parity=", null);
+        if (parity != null) {
+            String[] shards = parity.split(":", -1);
+            try {
+                if (shards.length == 2) {
+                    dataShards = Integer.parseInt(shards[0]);
+                    parityShards = Integer.parseInt(shards[1]);
+                }
+            } catch (NumberFormatException e) {
+                dataShards = 0;
+            }
+            if (dataShards < 1 || parityShards < 1 || dataShards + parityShards > ErasureCoder.MAX_SHARDS) {
+                System.err.println("Error: --parity expects <data>:<parity>, each at least 1 and at most "
+                    + ErasureCoder.MAX_SHARDS + " in total, e.g. --parity=10:2: " + parity);
+                return 1;
+            }
+        }
+        String resend = optionValue(args, "--resend=", null);
+        if (resend != null) {
+            for (Path input : inputs) {
+                // A regenerated session would get a new id, so only stored sessions can be re-sent
+                if (!input.toString().endsWith(SessionStore.DATA_EXTENSION)) {
+                    System.err.println("Error: --resend needs a stored session (" + SessionStore.DATA_EXTENSION
+                        + ") as input: " + input);
+                    return 1;
+                }
+            }
+        }
+        
+        String verify = hasOption(args, "--verify") ? "" : optionValue(args, "--verify=", null);
+        if (verify != null && !verify.isEmpty() && !VERIFY_CAPTURE.equals(verify)) {
+            System.err.println("Error: --verify takes no value or '" + VERIFY_CAPTURE + "': " + verify);
+            return 1;
+        }
+        
+        // The stream format only applies when writing to stdout
+        StreamFormat streamFormat = StreamFormat.ZIP;
+        String format = optionValue(args, "--format=", null);
+        if (format != null && STANDARD_STREAM.equals(outputDir)) {
+            try {
+                streamFormat = StreamFormat.valueOf(format.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: --format takes zip, png or ndjson: " + format);
+                return 1;
+            }
+        }
+        String storeDir = optionValue(args, "--store=", null);
+        TextQRConverterCli cli = new TextQRConverterCli(deltaBase != null ? Paths.get(deltaBase) : null,
+            dataShards, parityShards, storeDir != null ? new SessionStore(Paths.get(storeDir)) : null, resend,
+            verify != null, VERIFY_CAPTURE.equals(verify));
+        try {
+            return cli.execute(inputs, outputDir, codec, frameFormat, normalizer, streamFormat, stats);
+        } finally {
+            if (cli.verifier != null) {
+                cli.verifier.close();
+            }
+        }
+    }
+    
+    private int execute(List<Path> inputs, String outputDir, PayloadCodec codec, FrameFormat frameFormat,
+                        TextNormalizer normalizer, StreamFormat streamFormat, boolean stats) throws Exception {
+        if (STANDARD_STREAM.equals(outputDir)) {
+            if (inputs.size() != 1) {
+                System.err.println("Error: streaming to stdout takes exactly one input");
+                return 1;
+            }
+            return streamToStdout(inputs.get(0).toString(), codec, frameFormat, normalizer, streamFormat, stats);
+        }
+        
+        File outDir = new File(outputDir);
+        List<FileResult> results = processAll(inputs, outDir, codec, frameFormat, normalizer);
+        
+        int failed = 0;
+        for (FileResult result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+            }
+        }
+        
+        if (results.size() > 1) {
+            String summary = summarize(results);
+            System.out.print(summary);
+            textInputHandler.saveToFile(summary, new File(outDir, "batch_summary.txt").getAbsolutePath());
+        } else if (failed > 0) {
+            System.err.println("Error: " + results.get(0).getError());
+        }
+        
+        if (stats) {
+            PipelineMetrics metrics = PipelineMetrics.getInstance();
+            System.out.print(metrics.getSummary());
+            File statsFile = new File(outDir, "metrics.json");
+            textInputHandler.saveToFile(metrics.getJson(), statsFile.getAbsolutePath());
+        }
+        
+        return failed > 0 ? 1 : 0;
+    }
+    
+    private static List<String> positionalArguments(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                positional.add(args[i]);
+            }
+        }
+        return positional;
+    }
+    
+    private static boolean hasOption(String[] args, String option) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String optionValue(String[] args, String prefix, String defaultValue) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(prefix)) {
+                return args[i].substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Expands files, directories (recursively), globs and @list-files into input paths,
+     * in argument order and without duplicates. Paths that do not exist are kept so the
+     * batch reports them as failures.
+     */
+    static List<Path> resolveInputs(List<String> specs) throws IOException {
+        Set<Path> inputs = new LinkedHashSet<>();
+        for (String spec : specs) {
+            if (spec.startsWith("@")) {
+                for (String line : Files.readAllLines(Paths.get(spec.substring(1)), StandardCharsets.UTF_8)) {
+                    String entry = line.trim();
+                    if (!entry.isEmpty() && !entry.startsWith("#")) {
+                        resolveSpec(entry, inputs);
+                    }
+                }
+            } else {
+                resolveSpec(spec, inputs);
+            }
+        }
+        return new ArrayList<>(inputs);
+    }
+    
+    private static void resolveSpec(String spec, Set<Path> inputs) throws IOException {
+        if (STANDARD_STREAM.equals(spec)) {
+            inputs.add(Paths.get(spec));
+            return;
+        }
+        
+        int globStart = indexOfGlob(spec);
+        if (globStart >= 0) {
+            // Walk from the literal directory prefix and match the rest of the pattern
+            int slash = spec.lastIndexOf('/', globStart);
+            Path base = slash < 0 ? Paths.get("") : Paths.get(slash == 0 ? "/" : spec.substring(0, slash));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + spec.substring(slash + 1));
+            Path walkRoot = slash < 0 ? Paths.get(".") : base;
+            if (!Files.isDirectory(walkRoot)) {
+                return;
+            }
+            
+            try (Stream<Path> files = Files.walk(walkRoot)) {
+                files.filter(Files::isRegularFile)
+                    .map(file -> base.resolve(walkRoot.relativize(file)))
+                    .filter(file -> matcher.matches(base.relativize(file)))
+                    .sorted()
+                    .forEach(file -> inputs.add(file.normalize()));
+            }
+            return;
+        }
+        
+        Path path = Paths.get(spec);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile)
+                    .sorted()
+                    .forEach(file -> inputs.add(file.normalize()));
+            }
+        } else {
+            inputs.add(path.normalize());
+        }
+    }
+    
+    private static int indexOfGlob(String spec) {
+        for (int i = 0; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Converts all inputs on one shared pool, largest file first so the longest job starts
+     * earliest. Each file's QR codes are rendered as subtasks on the same pool, so idle
+     * workers help with the remaining large files once the small ones are done.
+     */
+    List<FileResult> processAll(List<Path> inputs, File outDir, PayloadCodec codec,
+                                FrameFormat frameFormat, TextNormalizer normalizer) {
+        List<Path> ordered = new ArrayList<>(inputs);
+        ordered.sort(Comparator.comparingLong(TextQRConverterCli::sizeOf).reversed());
+        
+        boolean batch = inputs.size() > 1;
+        Map<Path, File> outputDirs = new HashMap<>();
+        Set<String> usedNames = new HashSet<>();
+        for (Path input : inputs) {
+            outputDirs.put(input, batch ? new File(outDir, uniqueName(input, usedNames)) : outDir);
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<ForkJoinTask<FileResult>> tasks = new ArrayList<>();
+            for (Path input : ordered) {
+                tasks.add(pool.submit(() -> processOne(input, outputDirs.get(input), codec, frameFormat, normalizer)));
+            }
+            
+            List<FileResult> results = new ArrayList<>();
+            for (ForkJoinTask<FileResult> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private FileResult processOne(Path input, File outDir, PayloadCodec codec,
+                                  FrameFormat frameFormat, TextNormalizer normalizer) {
+        long start = System.nanoTime();
+        try {
+            QRSession session = processFile(input.toString(), outDir, codec, frameFormat, normalizer);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return new FileResult(input, outDir, session.getChunkCount(), millis, null);
+        } catch (Exception e) {
+            logger.error("Failed to convert {}", input, e);
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new FileResult(input, outDir, 0, (System.nanoTime() - start) / 1_000_000, message);
+        }
+    }
+    
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private static String uniqueName(Path input, Set<String> usedNames) {
+        String name = input.getFileName() != null ? input.getFileName().toString() : "input";
+        String candidate = name;
+        for (int i = 2; !usedNames.add(candidate); i++) {
+            candidate = name + "_" + i;
+        }
+        return candidate;
+    }
+    
+    private static String summarize(List<FileResult> results) {
+        int failed = 0;
+        StringBuilder lines = new StringBuilder();
+        for (FileResult result : results) {
+            if (result.isSuccess()) {
+                lines.append(String.format("OK      %s -> %s (%d QR codes, %d ms)%n",
+                    result.getInput(), result.getOutputDir(), result.getChunkCount(), result.getMillis()));
+            } else {
+                failed++;
+                lines.append(String.format("FAILED  %s: %s%n", result.getInput(), result.getError()));
+            }
+        }
+        return String.format("Batch summary: %d file(s), %d succeeded, %d failed%n",
+            results.size(), results.size() - failed, failed) + lines;
+    }
+    
+    static final class FileResult {
+        private final Path input;
+        private final File outputDir;
+        private final int chunkCount;
+        private final long millis;
+        private final String error;
+        
+        FileResult(Path input, File outputDir, int chunkCount, long millis, String error) {
+            this.input = input;
+            this.outputDir = outputDir;
+            this.chunkCount = chunkCount;
+            this.millis = millis;
+            this.error = error;
+        }
+        
+        boolean isSuccess() {
+            return error == null;
+        }
+        
+        Path getInput() {
+            return input;
+        }
+        
+        File getOutputDir() {
+            return outputDir;
+        }
+        
+        int getChunkCount() {
+            return chunkCount;
+        }
+        
+        long getMillis() {
+            return millis;
+        }
+        
+        String getError() {
+            return error;
+        }
+    }
+    
+    private QRSession processFile(String inputFile, File outDir, PayloadCodec codec,
+                                  FrameFormat frameFormat, TextNormalizer normalizer) throws Exception {
+        logger.info("Processing file: {} to directory: {}", inputFile, outDir);
+        
+        // Create output directory
+        if (!outDir.exists()) {
+            outDir.mkdirs();
+        }
+        
+        // Generate QR codes
+        QRSession session = createSession(inputFile, codec, frameFormat, normalizer);
+        try {
+            if (resend != null) {
+                writeSelected(session, outDir);
+            } else {
+                writeFiles(session, outDir);
+            }
+        } finally {
+            closeStored(session);
+        }
+        
+        logger.info("Processing complete. Output saved to: {}", outDir);
+        return session;
+    }
+    
+    private void writeSelected(QRSession session, File outDir) throws Exception {
+        List<QRChunk> chunks = selectedChunks(session);
+        for (QRChunk chunk : chunks) {
+            // Stored matrices are only rasterized; nothing is recompressed, rehashed or re-encoded
+            qrGenerator.saveQRCode(matrixFor(session, chunk),
+                new File(outDir, QRGenerator.chunkFileName(session, chunk.getSequenceNumber())));
+        }
+        logger.info("Re-sent {} of {} chunks of session {}", chunks.size(), session.getChunkCount(), session.getSessionId());
+    }
+    
+    private List<QRChunk> selectedChunks(QRSession session) {
+        List<QRChunk> chunks = session.getChunks();
+        if (resend == null) {
+            return chunks;
+        }
+        
+        List<QRChunk> selected = new ArrayList<>();
+        for (int sequence : SequenceRanges.parse(resend, chunks.size())) {
+            selected.add(chunks.get(sequence - 1));
+        }
+        return selected;
+    }
+    
+    private void writeFiles(QRSession session, File outDir) throws Exception {
+        // Generate and save individual QR codes as subtasks on the current pool; only the
+        // small module matrices are kept, each image goes back to the pool once written
+        List<Future<DecodeVerifier.Result>> verifications = Collections.synchronizedList(new ArrayList<>());
+        List<ForkJoinTask<QRMatrix>> renderTasks = new ArrayList<>();
+        for (QRChunk chunk : session.getChunks()) {
+            renderTasks.add(ForkJoinTask.adapt(() -> {
+                QRMatrix matrix = matrixFor(session, chunk);
+                BufferedImage image = qrGenerator.renderMatrix(matrix);
+                
+                File outputFile = new File(outDir, QRGenerator.chunkFileName(session, chunk.getSequenceNumber()));
+                qrGenerator.saveQRCode(image, outputFile);
+                if (verifier != null) {
+                    // Decoding back runs on the verifier's pool, which releases the image
+                    verifications.add(verifier.submit(session, chunk, matrix, image));
+                } else {
+                    qrGenerator.releaseImage(image);
+                }
+                return matrix;
+            }));
+        }
+        ForkJoinTask.invokeAll(renderTasks);
+        
+        List<QRMatrix> matrices = new ArrayList<>(renderTasks.size());
+        for (ForkJoinTask<QRMatrix> task : renderTasks) {
+            matrices.add(task.join());
+        }
+        verify(session, outDir, verifications, matrices);
+        
+        // Save manifest QR codes so the receiver can verify chunks as they arrive
+        List<QRMatrix> manifest = manifestFor(session);
+        if (store != null && !storedSessions.containsKey(session.getSessionId())) {
+            // Persist the symbols just rendered, repaired ones included, instead of encoding them again
+            store.save(session, manifest, matrices);
+        }
+        for (int i = 0; i < manifest.size(); i++) {
+            String filename = String.format("qr_%s_manifest_%d.png",
+                session.getSessionId().substring(0, 8),
+                i + 1);
+            qrGenerator.saveQRCode(manifest.get(i), new File(outDir, filename));
+        }
+        
+        // Save parity QR codes that let the receiver rebuild unreadable chunks
+        List<QRMatrix> parity = encodeParity(session);
+        for (int i = 0; i < parity.size(); i++) {
+            String filename = String.format("qr_%s_parity_%03d.png",
+                session.getSessionId().substring(0, 8),
+                i + 1);
+            qrGenerator.saveQRCode(parity.get(i), new File(outDir, filename));
+        }
+        
+        // Create composite image if multiple QR codes
+        if (matrices.size() > 1) {
+            int columns = Math.min(4, matrices.size());
+            BufferedImage composite = qrGenerator.composeMatrices(matrices, columns);
+            
+            File compositeFile = new File(outDir, "qr_composite_" + session.getSessionId().substring(0, 8) + ".png");
+            ImageIO.write(composite, "PNG", compositeFile);
+            logger.info("Composite image saved to: {}", compositeFile.getAbsolutePath());
+        }
+        
+        // Save session metadata
+        File metadataFile = new File(outDir, "session_" + session.getSessionId().substring(0, 8) + ".txt");
+        textInputHandler.saveToFile(metadata(session, manifest.size()), metadataFile.getAbsolutePath());
+    }
+    
+    private void verify(QRSession session, File outDir, List<Future<DecodeVerifier.Result>> verifications,
+                        List<QRMatrix> matrices) throws Exception {
+        if (verifier == null) {
+            return;
+        }
+        
+        int repaired = 0;
+        List<Integer> failed = new ArrayList<>();
+        for (Future<DecodeVerifier.Result> verification : verifications) {
+            DecodeVerifier.Result result = verification.get();
+            int sequence = result.getSequenceNumber();
+            if (result.getOutcome() == DecodeVerifier.Outcome.REPAIRED) {
+                // The more robust symbol replaces the one already written
+                File outputFile = new File(outDir, QRGenerator.chunkFileName(session, sequence));
+                qrGenerator.saveQRCode(result.getImage(), outputFile);
+                qrGenerator.releaseImage(result.getImage());
+                matrices.set(sequence - 1, result.getMatrix());
+                repaired++;
+            } else if (result.getOutcome() == DecodeVerifier.Outcome.FAILED) {
+                failed.add(sequence);
+            }
+        }
+        
+        if (!failed.isEmpty()) {
+            throw new IOException("QR codes " + SequenceRanges.format(failed) + " do not decode back");
+        }
+        logger.info("Verified {} QR codes of session {} ({} re-encoded)", verifications.size(),
+            session.getSessionId(), repaired);
+    }
+    
+    private QRMatrix matrixFor(QRSession session, QRChunk chunk) throws Exception {
+        SessionStore.StoredSession stored = storedSessions.get(session.getSessionId());
+        return stored != null
+            ? stored.getMatrix(chunk.getSequenceNumber())
+            : qrGenerator.encodeMatrix(session, chunk);
+    }
+    
+    private List<QRMatrix> manifestFor(QRSession session) throws Exception {
+        SessionStore.StoredSession stored = storedSessions.get(session.getSessionId());
+        return stored != null ? stored.getManifest() : qrGenerator.encodeManifest(session);
+    }
+    
+    private void closeStored(QRSession session) throws IOException {
+        SessionStore.StoredSession stored = storedSessions.remove(session.getSessionId());
+        if (stored != null) {
+            stored.close();
+        }
+    }
+    
+    private QRSession createSession(String inputFile, PayloadCodec codec, FrameFormat frameFormat,
+                                    TextNormalizer normalizer) throws Exception {
+        if (inputFile.endsWith(SessionStore.DATA_EXTENSION)) {
+            // Previously generated session: chunks and matrices are read back from the store
+            SessionStore.StoredSession stored = SessionStore.openFile(Paths.get(inputFile));
+            if (!stored.isComplete()) {
+                // Exporting the persisted prefix would announce chunks that do not exist
+                stored.close();
+                throw new IOException(String.format("Stored session %s is incomplete (%d of %d chunks); "
+                    + "generate it again from its source", stored.getSessionId(), stored.getStoredChunkCount(),
+                    stored.getChunkCount()));
+            }
+            QRSession session = stored.toSession();
+            storedSessions.put(session.getSessionId(), stored);
+            logger.info("Reopened stored session {} with {} chunks", session.getSessionId(), session.getChunkCount());
+            return session;
+        }
+        
+        QRLayoutOptimizer.Policy policy = new QRLayoutOptimizer.Policy(
+            ErrorCorrectionLevel.H, 40, QRLayoutOptimizer.Objective.MIN_SYMBOLS, frameFormat);
+        boolean stdin = STANDARD_STREAM.equals(inputFile);
+        
+        QRSession session;
+        if (deltaBase != null) {
+            session = createDeltaSession(inputFile, codec, policy, normalizer);
+        } else if (normalizer != null) {
+            // Normalized straight into UTF-8, so no String copy of the text is made
+            byte[] normalized = stdin
+                ? textInputHandler.readNormalized(System.in, normalizer)
+                : textInputHandler.readNormalized(inputFile, normalizer);
+            TextInputHandler.InputStatistics stats = textInputHandler.analyzeInput(normalized);
+            logger.info("Input statistics: {}", stats);
+            session = qrGenerator.createSession(normalized, codec, policy);
+        } else if (stdin) {
+            // Read incrementally; only the encoded payload is held
+            session = qrGenerator.createSession(System.in, codec, policy);
+        } else {
+            // Unmodified input is hashed and compressed straight from the mapped file
+            try (MappedFile mappedFile = textInputHandler.mapFile(inputFile)) {
+                logger.info("Input statistics: {}", textInputHandler.analyzeInput(mappedFile));
+                session = qrGenerator.createSession(mappedFile, codec, policy);
+            }
+        }
+        logger.info("Created session {} with {} chunks", session.getSessionId(), session.getChunkCount());
+        return session;
+    }
+    
+    private QRSession createDeltaSession(String inputFile, PayloadCodec codec, QRLayoutOptimizer.Policy policy,
+                                         TextNormalizer normalizer) throws IOException {
+        byte[] target;
+        if (normalizer != null) {
+            target = STANDARD_STREAM.equals(inputFile)
+                ? textInputHandler.readNormalized(System.in, normalizer)
+                : textInputHandler.readNormalized(inputFile, normalizer);
+        } else if (STANDARD_STREAM.equals(inputFile)) {
+            target = textInputHandler.readFromStream(System.in);
+        } else {
+            try (MappedFile mappedFile = textInputHandler.mapFile(inputFile)) {
+                target = mappedFile.readAllBytes();
+            }
+        }
+        
+        // The base is reference data the receiver already holds, not input to this run
+        byte[] base = Files.readAllBytes(deltaBase);
+        // The delta is binary, so the log transform does not apply; any compression means gzip
+        return qrGenerator.createDeltaSession(base, target, codec != PayloadCodec.PLAIN, policy);
+    }
+    
+    private int streamToStdout(String inputFile, PayloadCodec codec, FrameFormat frameFormat,
+                               TextNormalizer normalizer, StreamFormat format, boolean stats) throws Exception {
+        // Everything else printed from here on, including console logging, goes to stderr
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        try {
+            QRSession session = createSession(inputFile, codec, frameFormat, normalizer);
+            if (store != null && !storedSessions.containsKey(session.getSessionId())) {
+                // Streaming encodes one symbol at a time anyway, so it reads them back from the store
+                store.save(session, qrGenerator);
+                storedSessions.put(session.getSessionId(), store.open(session.getSessionId()));
+            }
+            OutputStream out = new BufferedOutputStream(stdout, 64 * 1024);
+            try {
+                writeStream(session, out, format);
+            } finally {
+                closeStored(session);
+            }
+            out.flush();
+            
+            if (stats) {
+                System.err.print(PipelineMetrics.getInstance().getSummary());
+            }
+            return 0;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+    
+    /**
+     * Writes a session as one stream, rendering one QR code at a time.
+     */
+    void writeStream(QRSession session, OutputStream out, StreamFormat format) throws Exception {
+        String shortId = session.getSessionId().substring(0, 8);
+        List<QRChunk> chunks = selectedChunks(session);
+        
+        if (format == StreamFormat.NDJSON) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (QRChunk chunk : chunks) {
+                writer.write(chunk.toJsonString());
+                writer.write('\n');
+            }
+            writer.flush();
+            return;
+        }
+        
+        if (format == StreamFormat.PNG) {
+            for (QRChunk chunk : chunks) {
+                qrGenerator.writeQRCode(matrixFor(session, chunk), out);
+            }
+            return;
+        }
+        
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (QRChunk chunk : chunks) {
+            zip.putNextEntry(new ZipEntry(String.format("qr_%s_%03d.png", shortId, chunk.getSequenceNumber())));
+            qrGenerator.writeQRCode(matrixFor(session, chunk), zip);
+            zip.closeEntry();
+        }
+        
+        List<QRMatrix> manifest = manifestFor(session);
+        for (int i = 0; i < manifest.size(); i++) {
+            zip.putNextEntry(new ZipEntry(String.format("qr_%s_manifest_%d.png", shortId, i + 1)));
+            qrGenerator.writeQRCode(manifest.get(i), zip);
+            zip.closeEntry();
+        }
+        
+        List<QRMatrix> parity = encodeParity(session);
+        for (int i = 0; i < parity.size(); i++) {
+            zip.putNextEntry(new ZipEntry(String.format("qr_%s_parity_%03d.png", shortId, i + 1)));
+            qrGenerator.writeQRCode(parity.get(i), zip);
+            zip.closeEntry();
+        }
+        
+        zip.putNextEntry(new ZipEntry("session_" + shortId + ".txt"));
+        zip.write(metadata(session, manifest.size()).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+    }
+    
+    private List<QRMatrix> encodeParity(QRSession session) throws Exception {
+        return parityShards > 0
+            ? qrGenerator.encodeParity(session, dataShards, parityShards)
+            : new ArrayList<>();
+    }
+    
+    private String metadata(QRSession session, int manifestCount) {
+        String metadata = String.format(
+            "Session ID: %s\nTotal Chunks: %d\nManifest Codes: %d\nOriginal Size: %d bytes\nChecksum: %s\nCompression: %s\nLayout: %s",
+            session.getSessionId(),
+            session.getChunkCount(),
+            manifestCount,
+            session.getTotalSize(),
+            session.getFullChecksum(),
+            session.getCodec(),
+            session.getLayout()
+        );
+        if (parityShards > 0) {
+            metadata += String.format("\nParity: %d parity per %d data codes", parityShards, dataShards);
+        }
+        if (session.getDeltaBaseChecksum() != null) {
+            metadata += String.format("\nDelta Base: %s (%d bytes, SHA-256 %s)",
+                deltaBase, session.getDeltaBaseSize(), session.getDeltaBaseChecksum());
+        }
+        return metadata;
+    }
+}
\ No newline at end of file
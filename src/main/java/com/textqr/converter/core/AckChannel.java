@@ -0,0 +1,180 @@
+package com.textqr.converter.core;
+
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.SequenceRanges;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Back channel on which a receiver confirms the chunks it has decoded, one line per
+ * report: "ACK &lt;first 8 characters of the session id&gt; &lt;sequence ranges&gt;", for
+ * example "ACK 1a2b3c4d 1-12, 15". Reports may repeat sequence numbers already sent.
+ */
+public interface AckChannel extends Closeable {
+    String PREFIX = "ACK";
+    
+    /**
+     * Returns the complete lines received since the last call, without blocking.
+     */
+    List<String> poll() throws IOException;
+    
+    static String format(QRSession session, Collection<Integer> sequenceNumbers) {
+        return PREFIX + " " + session.getSessionId().substring(0, 8) + " " + SequenceRanges.format(sequenceNumbers);
+    }
+    
+    /**
+     * Returns the sequence numbers a report line confirms, or an empty list when the
+     * line is not an acknowledgement for this session.
+     */
+    static List<Integer> parse(String line, QRSession session) {
+        String[] fields = line.trim().split("\\s+", 3);
+        if (fields.length < 3 || !PREFIX.equals(fields[0])
+                || !session.getSessionId().startsWith(fields[1])) {
+            return Collections.emptyList();
+        }
+        return SequenceRanges.parse(fields[2], session.getChunkCount());
+    }
+    
+    /**
+     * Reads reports appended to a file, such as one a receiver writes to a shared folder.
+     */
+    final class FileDrop implements AckChannel {
+        private final Path path;
+        private long offset;
+        
+        public FileDrop(Path path) {
+            this.path = path;
+        }
+        
+        @Override
+        public List<String> poll() throws IOException {
+            if (!Files.exists(path)) {
+                return Collections.emptyList();
+            }
+            
+            try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+                long size = channel.size();
+                if (size < offset) {
+                    // The file was replaced; start over from its beginning
+                    offset = 0;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) (size - offset));
+                channel.position(offset);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                
+                // A trailing partial line is left for the next poll
+                byte[] bytes = buffer.array();
+                int end = buffer.position();
+                while (end > 0 && bytes[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    return Collections.emptyList();
+                }
+                offset += end;
+                
+                List<String> lines = new ArrayList<>();
+                for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\r?\n")) {
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+                return lines;
+            }
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    /**
+     * Accepts receiver connections on a localhost port and collects the lines they send.
+     */
+    final class Loopback implements AckChannel {
+        private final ServerSocket serverSocket;
+        private final Queue<String> lines = new ConcurrentLinkedQueue<>();
+        private final List<Socket> connections = new CopyOnWriteArrayList<>();
+        
+        public Loopback(int port) throws IOException {
+            this.serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+            
+            Thread acceptor = new Thread(this::acceptConnections, "ack-loopback");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+        
+        private void acceptConnections() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.add(socket);
+                    
+                    Thread reader = new Thread(() -> readLines(socket), "ack-loopback-reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+        
+        private void readLines(Socket socket) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } catch (IOException e) {
+                // Connection closed by either side
+            } finally {
+                connections.remove(socket);
+            }
+        }
+        
+        @Override
+        public List<String> poll() {
+            List<String> received = new ArrayList<>();
+            String line;
+            while ((line = lines.poll()) != null) {
+                received.add(line);
+            }
+            return received;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Reads the three-layer color frames rendered by {@link QRGenerator#renderColorMatrix}:
+ * the red, green and blue channels are split into separate grayscale images and each
+ * is decoded with ZXing on its own.
+ */
+public class ColorQRDecoder {
+    public static final int LAYERS = 3;
+    
+    // Bit shifts of the red, green and blue channels in a packed RGB pixel
+    private static final int[] CHANNEL_SHIFTS = {16, 8, 0};
+    
+    /**
+     * Returns the text of the red, green and blue layers, with null for a layer that is
+     * blank or could not be read.
+     */
+    public String[] decode(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        
+        String[] layers = new String[LAYERS];
+        for (int layer = 0; layer < LAYERS; layer++) {
+            LuminanceSource source = new ChannelLuminanceSource(pixels, width, height, CHANNEL_SHIFTS[layer]);
+            layers[layer] = QRDecoding.decode(new BinaryBitmap(new HybridBinarizer(source)));
+        }
+        return layers;
+    }
+    
+    private static final class ChannelLuminanceSource extends LuminanceSource {
+        private final byte[] luminance;
+        
+        ChannelLuminanceSource(int[] pixels, int width, int height, int shift) {
+            super(width, height);
+            this.luminance = new byte[width * height];
+            for (int i = 0; i < luminance.length; i++) {
+                luminance[i] = (byte) (pixels[i] >>> shift);
+            }
+        }
+        
+        @Override
+        public byte[] getRow(int y, byte[] row) {
+            int width = getWidth();
+            if (row == null || row.length < width) {
+                row = new byte[width];
+            }
+            System.arraycopy(luminance, y * width, row, 0, width);
+            return row;
+        }
+        
+        @Override
+        public byte[] getMatrix() {
+            return luminance;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.textqr.converter.core;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRLayout;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.ChecksumUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes rendered symbols back with ZXing on its own thread pool while generation
+ * goes on, and checks the chunk data read from each against the chunk checksum.
+ * Optionally each symbol must also survive a simulated camera capture (half-size
+ * downscale plus blur). A symbol that fails is re-encoded at higher error correction
+ * levels, then rendered with ever larger modules, until one variant reads back.
+ */
+public class DecodeVerifier implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DecodeVerifier.class);
+    
+    private static final int CAPTURE_DOWNSCALE = 2;
+    // Repairs try modules up to this many times their original size
+    private static final int MAX_MODULE_SCALE = 4;
+    private static final Kernel CAPTURE_BLUR = new Kernel(3, 3, uniformKernel(9));
+    
+    public enum Outcome {
+        PASSED,
+        REPAIRED,
+        FAILED
+    }
+    
+    public static final class Result {
+        private final int sequenceNumber;
+        private final Outcome outcome;
+        private final QRMatrix matrix;
+        private final BufferedImage image;
+        private final String detail;
+        
+        Result(int sequenceNumber, Outcome outcome, QRMatrix matrix, BufferedImage image, String detail) {
+            this.sequenceNumber = sequenceNumber;
+            this.outcome = outcome;
+            this.matrix = matrix;
+            this.image = image;
+            this.detail = detail;
+        }
+        
+        public int getSequenceNumber() {
+            return sequenceNumber;
+        }
+        
+        public Outcome getOutcome() {
+            return outcome;
+        }
+        
+        /**
+         * The re-encoded symbol of a repaired chunk, null otherwise.
+         */
+        public QRMatrix getMatrix() {
+            return matrix;
+        }
+        
+        /**
+         * The rendered replacement of a repaired chunk, null otherwise. It comes from the
+         * generator's image pool; callers release it once it has been written.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+        
+        public String getDetail() {
+            return detail;
+        }
+    }
+    
+    private final QRGenerator generator;
+    private final boolean simulateCapture;
+    private final ExecutorService executor;
+    
+    public DecodeVerifier(QRGenerator generator, int threads, boolean simulateCapture) {
+        this.generator = generator;
+        this.simulateCapture = simulateCapture;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "decode-verify-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    private static float[] uniformKernel(int size) {
+        float[] kernel = new float[size];
+        Arrays.fill(kernel, 1f / size);
+        return kernel;
+    }
+    
+    /**
+     * Queues a rendered symbol for verification. The verifier takes over the image and
+     * returns it to the generator's pool when done.
+     */
+    public Future<Result> submit(QRSession session, QRChunk chunk, QRMatrix matrix, BufferedImage image) {
+        return executor.submit(() -> {
+            try {
+                return verify(session, chunk, matrix, image);
+            } finally {
+                generator.releaseImage(image);
+            }
+        });
+    }
+    
+    Result verify(QRSession session, QRChunk chunk, QRMatrix matrix, BufferedImage image) {
+        String failure = check(session, chunk, image);
+        if (failure == null) {
+            return new Result(chunk.getSequenceNumber(), Outcome.PASSED, null, null, null);
+        }
+        logger.warn("Chunk {} of session {} did not decode back: {}", chunk.getSequenceNumber(),
+            session.getSessionId(), failure);
+        
+        // Stronger error correction first; the symbol grows, but its modules keep their size
+        QRLayout layout = session.getLayout();
+        ErrorCorrectionLevel base = layout != null ? layout.getErrorCorrection() : ErrorCorrectionLevel.H;
+        int moduleSize = QRGenerator.defaultModuleSize(matrix);
+        for (int scale = 1; scale <= MAX_MODULE_SCALE; scale++) {
+            int firstLevel = scale == 1 ? base.ordinal() + 1 : base.ordinal();
+            for (int level = firstLevel; level < ErrorCorrectionLevel.values().length; level++) {
+                ErrorCorrectionLevel errorCorrection = ErrorCorrectionLevel.values()[level];
+                QRMatrix candidate;
+                try {
+                    candidate = generator.encodeMatrix(session, chunk, errorCorrection);
+                } catch (WriterException e) {
+                    // The chunk fills its symbol at the base level and no longer fits at this one
+                    logger.debug("Chunk {} does not fit at EC {}: {}", chunk.getSequenceNumber(), errorCorrection,
+                        e.getMessage());
+                    continue;
+                }
+                int candidateModuleSize = scale * Math.max(moduleSize, QRGenerator.defaultModuleSize(candidate));
+                BufferedImage rendered = generator.renderMatrix(candidate, candidateModuleSize);
+                if (check(session, chunk, rendered) == null) {
+                    String detail = String.format("re-encoded at EC %s with %d px modules", errorCorrection,
+                        candidateModuleSize);
+                    logger.info("Chunk {} of session {} {}", chunk.getSequenceNumber(), session.getSessionId(), detail);
+                    return new Result(chunk.getSequenceNumber(), Outcome.REPAIRED, candidate, rendered, detail);
+                }
+                generator.releaseImage(rendered);
+            }
+        }
+        return new Result(chunk.getSequenceNumber(), Outcome.FAILED, null, null, failure);
+    }
+    
+    /**
+     * Returns null when the image reads back as the chunk, otherwise why it did not.
+     */
+    String check(QRSession session, QRChunk chunk, BufferedImage image) {
+        String failure = checkDecoded(session, chunk, decode(image));
+        if (failure != null || !simulateCapture) {
+            return failure;
+        }
+        failure = checkDecoded(session, chunk, decode(simulateCapture(image)));
+        return failure != null ? "after simulated capture, " + failure : null;
+    }
+    
+    private static String checkDecoded(QRSession session, QRChunk chunk, String text) {
+        if (text == null) {
+            return "no QR code found";
+        }
+        
+        QRLayout layout = session.getLayout();
+        FrameFormat format = layout != null ? layout.getFrameFormat() : FrameFormat.JSON;
+        String data;
+        try {
+            data = frameData(text, format);
+        } catch (IllegalArgumentException | JsonParseException | IllegalStateException e) {
+            return "unreadable frame: " + e.getMessage();
+        }
+        
+        String checksum = ChecksumUtil.calculateChunkChecksum(chunk.getSequenceNumber(), data);
+        return checksum.equals(chunk.getChecksum()) ? null : "chunk checksum mismatch";
+    }
+    
+    private static String frameData(String text, FrameFormat format) {
+        switch (format) {
+            case STRUCTURED_APPEND:
+                return text;
+            case COMPACT:
+                return QRChunk.fromCompactString(text).getData();
+            default:
+                JsonObject frame = JsonParser.parseString(text).getAsJsonObject();
+                return frame.get("data").getAsString();
+        }
+    }
+    
+    private static String decode(BufferedImage image) {
+        return QRDecoding.decode(new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+    }
+    
+    /**
+     * Approximates a camera capture: the symbol is downscaled to half size with bilinear
+     * filtering, then blurred with a 3x3 box filter.
+     */
+    static BufferedImage simulateCapture(BufferedImage image) {
+        int width = Math.max(1, image.getWidth() / CAPTURE_DOWNSCALE);
+        int height = Math.max(1, image.getHeight() / CAPTURE_DOWNSCALE);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        
+        return new ConvolveOp(CAPTURE_BLUR, ConvolveOp.EDGE_NO_OP, null).filter(scaled, null);
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
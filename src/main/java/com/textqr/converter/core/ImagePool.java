@@ -0,0 +1,120 @@
+package com.textqr.converter.core;
+
+import com.textqr.converter.util.PipelineMetrics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reusable render targets, keyed by size and image type. Symbols of one version
+ * rendered at one module size always have the same dimensions, so a slideshow or
+ * export cycles through a handful of rasters instead of allocating one per symbol.
+ * Released images are kept only while the pool's total footprint stays within its
+ * bound; anything beyond that is left to the garbage collector. Pool hits and
+ * misses are counted as CACHE_HITS and CACHE_MISSES in {@link PipelineMetrics}.
+ */
+public class ImagePool {
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    
+    private final long maxBytes;
+    private final Map<Key, ArrayDeque<BufferedImage>> free = new HashMap<>();
+    private final Set<BufferedImage> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final PipelineMetrics metrics = PipelineMetrics.getInstance();
+    private long retainedBytes;
+    
+    public ImagePool(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Pool size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Returns an image of the given size and type. Its previous contents are undefined;
+     * callers overwrite every pixel.
+     */
+    public BufferedImage acquire(int width, int height, int imageType) {
+        Key key = new Key(width, height, imageType);
+        synchronized (this) {
+            ArrayDeque<BufferedImage> images = free.get(key);
+            BufferedImage image = images != null ? images.pollFirst() : null;
+            if (image != null) {
+                pooled.remove(image);
+                retainedBytes -= sizeOf(image);
+                metrics.increment(PipelineMetrics.Counter.CACHE_HITS);
+                return image;
+            }
+        }
+        
+        metrics.increment(PipelineMetrics.Counter.CACHE_MISSES);
+        return new BufferedImage(width, height, imageType);
+    }
+    
+    /**
+     * Hands an image back for reuse. The caller must not touch it afterwards.
+     * Releasing an image twice has no further effect.
+     */
+    public synchronized void release(BufferedImage image) {
+        if (image == null || pooled.contains(image)) {
+            return;
+        }
+        
+        long size = sizeOf(image);
+        if (retainedBytes + size > maxBytes) {
+            return;
+        }
+        
+        free.computeIfAbsent(new Key(image.getWidth(), image.getHeight(), image.getType()), k -> new ArrayDeque<>())
+            .addFirst(image);
+        pooled.add(image);
+        retainedBytes += size;
+    }
+    
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+    
+    public synchronized void clear() {
+        free.clear();
+        pooled.clear();
+        retainedBytes = 0;
+    }
+    
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+    
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final int imageType;
+        
+        Key(int width, int height, int imageType) {
+            this.width = width;
+            this.height = height;
+            this.imageType = imageType;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && imageType == other.imageType;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, imageType);
+        }
+    }
+}
\ No newline at end of file
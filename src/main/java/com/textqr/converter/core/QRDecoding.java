@@ -0,0 +1,46 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * ZXing reading shared by the decoders and the verifier.
+ */
+final class QRDecoding {
+    private static final Map<DecodeHintType, Object> HINTS = buildHints(DecodeHintType.TRY_HARDER);
+    // The finder pattern search occasionally locks onto data modules in an otherwise
+    // perfect symbol; sampling it as a pure barcode tells those apart from real failures
+    private static final Map<DecodeHintType, Object> PURE_HINTS = buildHints(DecodeHintType.PURE_BARCODE);
+    
+    private QRDecoding() {
+    }
+    
+    private static Map<DecodeHintType, Object> buildHints(DecodeHintType flag) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(flag, Boolean.TRUE);
+        return Collections.unmodifiableMap(hints);
+    }
+    
+    /**
+     * Returns the text of the QR code in the bitmap, or null when none could be read.
+     */
+    static String decode(BinaryBitmap bitmap) {
+        // QRCodeReader keeps decoder state, so each call gets its own
+        QRCodeReader reader = new QRCodeReader();
+        try {
+            return reader.decode(bitmap, HINTS).getText();
+        } catch (ReaderException e) {
+            try {
+                return reader.decode(bitmap, PURE_HINTS).getText();
+            } catch (ReaderException pureFailure) {
+                return null;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -6,9 +6,22 @@ import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import com.textqr.converter.model.FrameFormat;
 import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRLayout;
+import com.textqr.converter.model.QRManifest;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRParity;
 import com.textqr.converter.model.QRSession;
 import com.textqr.converter.util.ChecksumUtil;
+import com.textqr.converter.util.HashingInputStream;
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.PipelineMetrics;
 import com.textqr.converter.util.TextChunker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,37 +29,219 @@ import org.slf4j.LoggerFactory;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 
+/**
+ * QR encoding and rendering engine.
+ * Instances are immutable and safe to share between threads: hint maps are
+ * precomputed and read-only, ZXing's writer and encoder are stateless, and
+ * rendering scratch space is held per thread. Rendered images come from an
+ * {@link ImagePool}; callers done with one hand it back with {@link #releaseImage}.
+ */
 public class QRGenerator {
     private static final Logger logger = LoggerFactory.getLogger(QRGenerator.class);
     
     private static final int DEFAULT_QR_SIZE = 500;
     private static final int MARGIN = 20;
+    private static final int QUIET_ZONE_MODULES = 1;
+    private static final int MAX_VERSION = 40;
     private static final ErrorCorrectionLevel ERROR_CORRECTION = ErrorCorrectionLevel.H;
     
+    // Read-only encoder hints indexed by [EC level ordinal][version], version 0 meaning "let ZXing choose"
+    private static final Map<EncodeHintType, Object>[][] ENCODER_HINTS = buildEncoderHints();
+    private static final Map<EncodeHintType, Object>[] WRITER_HINTS = buildWriterHints();
+    
+    // Per-thread scanline buffer reused across renders
+    private static final ThreadLocal<byte[]> SCANLINE = ThreadLocal.withInitial(() -> new byte[0]);
+    
     private final QRCodeWriter qrCodeWriter;
+    private final QRLayoutOptimizer layoutOptimizer;
+    private final ErrorCorrectionLevel defaultErrorCorrection;
+    private final ImagePool imagePool;
+    private final PipelineMetrics metrics = PipelineMetrics.getInstance();
     
     public QRGenerator() {
+        this(ERROR_CORRECTION);
+    }
+    
+    public QRGenerator(ErrorCorrectionLevel defaultErrorCorrection) {
+        this(defaultErrorCorrection, new ImagePool(ImagePool.DEFAULT_MAX_BYTES));
+    }
+    
+    public QRGenerator(ErrorCorrectionLevel defaultErrorCorrection, ImagePool imagePool) {
         this.qrCodeWriter = new QRCodeWriter();
+        this.layoutOptimizer = new QRLayoutOptimizer();
+        this.defaultErrorCorrection = defaultErrorCorrection;
+        this.imagePool = imagePool;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<EncodeHintType, Object>[][] buildEncoderHints() {
+        ErrorCorrectionLevel[] levels = ErrorCorrectionLevel.values();
+        Map<EncodeHintType, Object>[][] hints = new Map[levels.length][MAX_VERSION + 1];
+        for (ErrorCorrectionLevel level : levels) {
+            for (int version = 0; version <= MAX_VERSION; version++) {
+                Map<EncodeHintType, Object> map = new EnumMap<>(EncodeHintType.class);
+                map.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+                if (version > 0) {
+                    map.put(EncodeHintType.QR_VERSION, version);
+                }
+                hints[level.ordinal()][version] = Collections.unmodifiableMap(map);
+            }
+        }
+        return hints;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<EncodeHintType, Object>[] buildWriterHints() {
+        ErrorCorrectionLevel[] levels = ErrorCorrectionLevel.values();
+        Map<EncodeHintType, Object>[] hints = new Map[levels.length];
+        for (ErrorCorrectionLevel level : levels) {
+            Map<EncodeHintType, Object> map = new EnumMap<>(EncodeHintType.class);
+            map.put(EncodeHintType.ERROR_CORRECTION, level);
+            map.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+            map.put(EncodeHintType.MARGIN, 1);
+            hints[level.ordinal()] = Collections.unmodifiableMap(map);
+        }
+        return hints;
     }
     
     public QRSession createSession(String text, boolean useCompression) {
-        logger.info("Creating QR session for text of length: {}", text.length());
+        return createSession(text, useCompression, QRLayoutOptimizer.Policy.DEFAULT);
+    }
+    
+    public QRSession createSession(String text, boolean useCompression, QRLayoutOptimizer.Policy policy) {
+        return createSession(text, PayloadCodec.of(useCompression), policy);
+    }
+    
+    public QRSession createSession(String text, PayloadCodec codec, QRLayoutOptimizer.Policy policy) {
+        logger.info("Creating QR session for text of length: {} using {}", text.length(), codec);
+        
+        ByteBuffer payload = ByteBuffer.wrap(codec.encode(text));
+        int payloadLength = TextChunker.encodedLength(payload.remaining());
+        metrics.add(PipelineMetrics.Counter.PAYLOAD_BYTES, payloadLength);
+        QRLayout layout = layoutOptimizer.optimize(payloadLength, policy);
+        logger.info("Selected layout: {}", layout);
+        
+        String fullChecksum;
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+            fullChecksum = ChecksumUtil.calculateSHA256(text);
+        }
+        QRSession session = new QRSession(text, fullChecksum, layout, codec);
+        addChunks(session, payload, layout);
+        return session;
+    }
+    
+    /**
+     * Creates a session over UTF-8 bytes already read into memory, such as normalized input.
+     * The session keeps only their size and checksum, not a decoded copy.
+     */
+    public QRSession createSession(byte[] data, PayloadCodec codec, QRLayoutOptimizer.Policy policy) {
+        logger.info("Creating QR session for {} bytes using {}", data.length, codec);
+        
+        ByteBuffer payload = ByteBuffer.wrap(codec.encode(data));
+        int payloadLength = TextChunker.encodedLength(payload.remaining());
+        metrics.add(PipelineMetrics.Counter.PAYLOAD_BYTES, payloadLength);
+        QRLayout layout = layoutOptimizer.optimize(payloadLength, policy);
+        logger.info("Selected layout: {}", layout);
+        
+        String fullChecksum;
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+            fullChecksum = ChecksumUtil.calculateSHA256(data);
+        }
+        QRSession session = new QRSession(data.length, fullChecksum, layout, codec);
+        addChunks(session, payload, layout);
+        return session;
+    }
+    
+    public QRSession createSession(MappedFile file, PayloadCodec codec, QRLayoutOptimizer.Policy policy) {
+        logger.info("Creating QR session for mapped file {} of {} bytes using {}", file.getPath(), file.size(), codec);
+        
+        ByteBuffer payload = codec.encodeBuffer(file);
+        int payloadLength = TextChunker.encodedLength(payload.remaining());
+        metrics.add(PipelineMetrics.Counter.PAYLOAD_BYTES, payloadLength);
+        QRLayout layout = layoutOptimizer.optimize(payloadLength, policy);
+        logger.info("Selected layout: {}", layout);
+        
+        String fullChecksum;
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+            fullChecksum = ChecksumUtil.calculateSHA256(file);
+        }
+        QRSession session = new QRSession(file, fullChecksum, layout, codec);
+        addChunks(session, payload, layout);
+        return session;
+    }
+    
+    public QRSession createSession(InputStream in, PayloadCodec codec, QRLayoutOptimizer.Policy policy) throws IOException {
+        logger.info("Creating QR session from stream using {}", codec);
         
-        String fullChecksum = ChecksumUtil.calculateSHA256(text);
-        QRSession session = new QRSession(text, fullChecksum);
+        // Hashing happens in the same read pass as compression
+        HashingInputStream hashing = new HashingInputStream(in);
+        ByteBuffer payload = ByteBuffer.wrap(codec.encode(hashing));
+        metrics.add(PipelineMetrics.Counter.INPUT_BYTES, hashing.getByteCount());
         
-        List<String> chunks = TextChunker.chunkText(text, useCompression);
+        int payloadLength = TextChunker.encodedLength(payload.remaining());
+        metrics.add(PipelineMetrics.Counter.PAYLOAD_BYTES, payloadLength);
+        QRLayout layout = layoutOptimizer.optimize(payloadLength, policy);
+        logger.info("Selected layout: {}", layout);
+        
+        QRSession session = new QRSession(hashing.getByteCount(), hashing.getSHA256Hex(), layout, codec);
+        addChunks(session, payload, layout);
+        return session;
+    }
+    
+    public QRSession createDeltaSession(byte[] base, byte[] target, boolean useCompression,
+                                        QRLayoutOptimizer.Policy policy) {
+        logger.info("Creating delta QR session for {} bytes against a base of {} bytes", target.length, base.length);
+        
+        // Marked as a delta so the manifest tells the receiver to patch its base
+        PayloadCodec codec = PayloadCodec.delta(useCompression);
+        ByteBuffer payload = ByteBuffer.wrap(codec.encodeDelta(base, target));
+        logger.info("Delta payload is {} bytes", payload.remaining());
+        
+        int payloadLength = TextChunker.encodedLength(payload.remaining());
+        metrics.add(PipelineMetrics.Counter.PAYLOAD_BYTES, payloadLength);
+        QRLayout layout = layoutOptimizer.optimize(payloadLength, policy);
+        logger.info("Selected layout: {}", layout);
+        
+        String fullChecksum;
+        String baseChecksum;
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+            fullChecksum = ChecksumUtil.calculateSHA256(target);
+            baseChecksum = ChecksumUtil.calculateSHA256(base);
+        }
+        // The checksum and size describe the patched target, not the delta that is sent
+        QRSession session = new QRSession(target.length, fullChecksum, layout, codec);
+        session.setDeltaBase(base.length, baseChecksum);
+        addChunks(session, payload, layout);
+        return session;
+    }
+    
+    private void addChunks(QRSession session, ByteBuffer payload, QRLayout layout) {
+        List<String> chunks = TextChunker.splitPayload(payload, layout.getChunkSize());
         logger.info("Text split into {} chunks", chunks.size());
         
         for (int i = 0; i < chunks.size(); i++) {
             String chunkData = chunks.get(i);
-            String chunkChecksum = ChecksumUtil.calculateChunkChecksum(i + 1, chunkData);
+            String chunkChecksum;
+            try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+                chunkChecksum = ChecksumUtil.calculateChunkChecksum(i + 1, chunkData);
+            }
             
             QRChunk chunk = new QRChunk(
                 i + 1,
@@ -58,8 +253,6 @@ public class QRGenerator {
             
             session.addChunk(chunk);
         }
-        
-        return session;
     }
     
     public BufferedImage generateQRCode(QRChunk chunk) throws WriterException {
@@ -67,86 +260,441 @@ public class QRGenerator {
     }
     
     public BufferedImage generateQRCode(String data, int size) throws WriterException {
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.ERROR_CORRECTION, ERROR_CORRECTION);
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        hints.put(EncodeHintType.MARGIN, 1);
-        
+        Map<EncodeHintType, Object> hints = WRITER_HINTS[defaultErrorCorrection.ordinal()];
         BitMatrix bitMatrix = qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, size, size, hints);
         
         return createQRImage(bitMatrix);
     }
     
+    public QRMatrix encodeMatrix(QRChunk chunk) throws WriterException {
+        return encodeMatrix(chunk.toJsonString());
+    }
+    
+    public QRMatrix encodeMatrix(QRSession session, QRChunk chunk) throws WriterException {
+        QRLayout layout = session.getLayout();
+        if (layout == null) {
+            return encodeMatrix(chunk);
+        }
+        
+        if (layout.getFrameFormat() == FrameFormat.STRUCTURED_APPEND) {
+            try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.ENCODE)) {
+                return StructuredAppendEncoder.encode(
+                    chunk.getData(),
+                    layout.getErrorCorrection(),
+                    Version.getVersionForNumber(layout.getVersion()),
+                    chunk.getSequenceNumber() - 1,
+                    chunk.getTotalChunks(),
+                    session.getStructuredAppendParity()
+                );
+            }
+        }
+        
+        String frame = chunk.toFrameString(layout.getFrameFormat());
+        return encodeMatrix(frame, layout.getErrorCorrection(), layout.getVersion());
+    }
+    
+    /**
+     * Encodes a chunk at another error correction level than its layout's, in the
+     * smallest version that holds it. The frame itself is unchanged, so receivers
+     * reassemble it exactly like the layout's own symbol.
+     */
+    public QRMatrix encodeMatrix(QRSession session, QRChunk chunk, ErrorCorrectionLevel errorCorrection)
+            throws WriterException {
+        QRLayout layout = session.getLayout();
+        if (layout == null || layout.getErrorCorrection() == errorCorrection) {
+            return encodeMatrix(session, chunk);
+        }
+        
+        if (layout.getFrameFormat() == FrameFormat.STRUCTURED_APPEND) {
+            for (int version = 1; ; version++) {
+                try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.ENCODE)) {
+                    return StructuredAppendEncoder.encode(
+                        chunk.getData(),
+                        errorCorrection,
+                        Version.getVersionForNumber(version),
+                        chunk.getSequenceNumber() - 1,
+                        chunk.getTotalChunks(),
+                        session.getStructuredAppendParity()
+                    );
+                } catch (WriterException e) {
+                    if (version == MAX_VERSION) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        
+        return encodeMatrix(chunk.toFrameString(layout.getFrameFormat()), errorCorrection, 0);
+    }
+    
+    /**
+     * Encodes only the listed chunks of an existing session, straight from its chunk data.
+     */
+    public List<QRMatrix> encodeMatrices(QRSession session, List<Integer> sequenceNumbers) throws WriterException {
+        List<QRChunk> chunks = session.getChunks();
+        List<QRMatrix> matrices = new ArrayList<>(sequenceNumbers.size());
+        for (int sequence : sequenceNumbers) {
+            if (sequence < 1 || sequence > chunks.size()) {
+                throw new IllegalArgumentException("Session has no chunk " + sequence);
+            }
+            matrices.add(encodeMatrix(session, chunks.get(sequence - 1)));
+        }
+        return matrices;
+    }
+    
+    /**
+     * Renders and saves the listed chunks as qr_&lt;session&gt;_&lt;sequence&gt;.png, the same
+     * names a full export uses, so re-sent codes replace the ones that failed to scan.
+     */
+    public List<File> exportChunks(QRSession session, List<Integer> sequenceNumbers, File outputDir)
+            throws WriterException, IOException {
+        List<QRMatrix> matrices = encodeMatrices(session, sequenceNumbers);
+        outputDir.mkdirs();
+        
+        List<File> files = new ArrayList<>(matrices.size());
+        for (int i = 0; i < matrices.size(); i++) {
+            File outputFile = new File(outputDir, chunkFileName(session, sequenceNumbers.get(i)));
+            saveQRCode(matrices.get(i), outputFile);
+            files.add(outputFile);
+        }
+        logger.info("Exported {} of {} chunks of session {}", files.size(), session.getChunkCount(), session.getSessionId());
+        return files;
+    }
+    
+    public static String chunkFileName(QRSession session, int sequenceNumber) {
+        return String.format("qr_%s_%03d.png", session.getSessionId().substring(0, 8), sequenceNumber);
+    }
+    
+    public List<QRMatrix> encodeManifest(QRSession session) throws WriterException {
+        ErrorCorrectionLevel errorCorrection = session.getLayout() != null
+            ? session.getLayout().getErrorCorrection()
+            : defaultErrorCorrection;
+        
+        // Manifest frames are plain text and pick the smallest version that fits them
+        int frameLength = QRLayoutOptimizer.getByteCapacity(Version.getVersionForNumber(MAX_VERSION), errorCorrection);
+        List<String> frames = QRManifest.of(session).toFrameStrings(frameLength);
+        
+        List<QRMatrix> matrices = new ArrayList<>(frames.size());
+        for (String frame : frames) {
+            matrices.add(encodeMatrix(frame, errorCorrection, 0));
+        }
+        return matrices;
+    }
+    
+    public List<QRMatrix> encodeParity(QRSession session, int dataShards, int parityShards) throws WriterException {
+        ErrorCorrectionLevel errorCorrection = session.getLayout() != null
+            ? session.getLayout().getErrorCorrection()
+            : defaultErrorCorrection;
+        
+        List<QRMatrix> matrices = new ArrayList<>();
+        for (QRParity parity : QRParity.of(session, dataShards, parityShards)) {
+            matrices.add(encodeParityFrame(parity.toFrameString(), errorCorrection));
+        }
+        return matrices;
+    }
+    
+    private QRMatrix encodeParityFrame(String frame, ErrorCorrectionLevel errorCorrection) throws WriterException {
+        // A parity frame is as long as a full chunk plus its own header, which may not fit a
+        // symbol the layout filled to capacity; step down error correction until it does
+        for (int level = errorCorrection.ordinal(); ; level--) {
+            try {
+                return encodeMatrix(frame, ErrorCorrectionLevel.values()[level], 0);
+            } catch (WriterException e) {
+                if (level == 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    public QRMatrix encodeMatrix(String data) throws WriterException {
+        return encodeMatrix(data, defaultErrorCorrection, 0);
+    }
+    
+    private QRMatrix encodeMatrix(String data, ErrorCorrectionLevel errorCorrection, int version) throws WriterException {
+        Map<EncodeHintType, Object> hints = ENCODER_HINTS[errorCorrection.ordinal()][version];
+        
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.ENCODE)) {
+            QRCode qrCode = Encoder.encode(data, errorCorrection, hints);
+            return toMatrix(qrCode.getMatrix());
+        }
+    }
+    
+    private QRMatrix toMatrix(ByteMatrix byteMatrix) {
+        int dimension = byteMatrix.getWidth();
+        long[] bits = QRMatrix.allocateBits(dimension);
+        byte[][] modules = byteMatrix.getArray();
+        
+        for (int y = 0; y < dimension; y++) {
+            byte[] row = modules[y];
+            for (int x = 0; x < dimension; x++) {
+                if (row[x] == 1) {
+                    QRMatrix.setBit(bits, dimension, x, y);
+                }
+            }
+        }
+        
+        return new QRMatrix(dimension, bits);
+    }
+    
+    public BufferedImage renderMatrix(QRMatrix matrix) {
+        return renderMatrix(matrix, defaultModuleSize(matrix));
+    }
+    
+    /**
+     * Module size in pixels that {@link #renderMatrix(QRMatrix)} uses for a symbol.
+     */
+    public static int defaultModuleSize(QRMatrix matrix) {
+        int modulesWithQuietZone = matrix.getDimension() + QUIET_ZONE_MODULES * 2;
+        return Math.max(1, DEFAULT_QR_SIZE / modulesWithQuietZone);
+    }
+    
+    public BufferedImage renderMatrix(QRMatrix matrix, int moduleSize) {
+        if (moduleSize < 1) {
+            throw new IllegalArgumentException("Module size must be positive: " + moduleSize);
+        }
+        
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.RASTERIZE)) {
+            metrics.increment(PipelineMetrics.Counter.SYMBOLS);
+            return rasterize(matrix, moduleSize);
+        }
+    }
+    
+    private BufferedImage rasterize(QRMatrix matrix, int moduleSize) {
+        int dimension = matrix.getDimension();
+        int offset = MARGIN + QUIET_ZONE_MODULES * moduleSize;
+        int imageSize = dimension * moduleSize + offset * 2;
+        
+        // 1-bit image: palette index 0 is black, 1 is white
+        BufferedImage image = imagePool.acquire(imageSize, imageSize, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (imageSize + 7) >>> 3;
+        Arrays.fill(pixels, (byte) 0xFF);
+        
+        // Build each module row once, then copy it moduleSize times (integer nearest-neighbour)
+        byte[] scanline = scanline(stride);
+        for (int y = 0; y < dimension; y++) {
+            Arrays.fill(scanline, 0, stride, (byte) 0xFF);
+            for (int x = 0; x < dimension; x++) {
+                if (matrix.get(x, y)) {
+                    int start = offset + x * moduleSize;
+                    for (int px = start; px < start + moduleSize; px++) {
+                        scanline[px >>> 3] &= (byte) ~(0x80 >>> (px & 7));
+                    }
+                }
+            }
+            
+            int firstRow = offset + y * moduleSize;
+            for (int row = firstRow; row < firstRow + moduleSize; row++) {
+                System.arraycopy(scanline, 0, pixels, row * stride, stride);
+            }
+        }
+        
+        return image;
+    }
+    
+    /**
+     * Renders the session three chunks per frame, one per color channel, for
+     * screen-to-camera transfer. Read back with {@link ColorQRDecoder}.
+     */
+    public List<BufferedImage> renderColorFrames(QRSession session) throws WriterException {
+        List<QRChunk> chunks = session.getChunks();
+        List<BufferedImage> frames = new ArrayList<>((chunks.size() + 2) / 3);
+        for (int first = 0; first < chunks.size(); first += ColorQRDecoder.LAYERS) {
+            QRMatrix[] layers = new QRMatrix[ColorQRDecoder.LAYERS];
+            for (int layer = 0; layer < layers.length && first + layer < chunks.size(); layer++) {
+                layers[layer] = encodeMatrix(session, chunks.get(first + layer));
+            }
+            frames.add(renderColorMatrix(layers));
+        }
+        return frames;
+    }
+    
+    public BufferedImage renderColorMatrix(QRMatrix... layers) {
+        int dimension = 0;
+        for (QRMatrix layer : layers) {
+            if (layer != null) {
+                dimension = Math.max(dimension, layer.getDimension());
+            }
+        }
+        int moduleSize = Math.max(1, DEFAULT_QR_SIZE / (dimension + QUIET_ZONE_MODULES * 2));
+        
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.RASTERIZE)) {
+            metrics.increment(PipelineMetrics.Counter.SYMBOLS);
+            return rasterizeColor(layers, dimension, moduleSize);
+        }
+    }
+    
+    private BufferedImage rasterizeColor(QRMatrix[] layers, int dimension, int moduleSize) {
+        int offset = MARGIN + QUIET_ZONE_MODULES * moduleSize;
+        int imageSize = dimension * moduleSize + offset * 2;
+        
+        BufferedImage image = imagePool.acquire(imageSize, imageSize, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0xFFFFFF);
+        
+        // Layers 0, 1 and 2 go to red, green and blue: a dark module clears only its own channel
+        for (int layer = 0; layer < layers.length && layer < ColorQRDecoder.LAYERS; layer++) {
+            QRMatrix matrix = layers[layer];
+            if (matrix == null) {
+                continue;
+            }
+            int mask = ~(0xFF << (16 - 8 * layer));
+            int layerOffset = offset + (dimension - matrix.getDimension()) / 2 * moduleSize;
+            for (int y = 0; y < matrix.getDimension(); y++) {
+                for (int x = 0; x < matrix.getDimension(); x++) {
+                    if (!matrix.get(x, y)) {
+                        continue;
+                    }
+                    int left = layerOffset + x * moduleSize;
+                    for (int row = layerOffset + y * moduleSize; row < layerOffset + (y + 1) * moduleSize; row++) {
+                        for (int px = left; px < left + moduleSize; px++) {
+                            pixels[row * imageSize + px] &= mask;
+                        }
+                    }
+                }
+            }
+        }
+        return image;
+    }
+    
+    private static byte[] scanline(int stride) {
+        byte[] buffer = SCANLINE.get();
+        if (buffer.length < stride) {
+            buffer = new byte[stride];
+            SCANLINE.set(buffer);
+        }
+        return buffer;
+    }
+    
     private BufferedImage createQRImage(BitMatrix bitMatrix) {
         int width = bitMatrix.getWidth();
         int height = bitMatrix.getHeight();
+        int imageWidth = width + (MARGIN * 2);
         
-        BufferedImage image = new BufferedImage(
-            width + (MARGIN * 2), 
-            height + (MARGIN * 2), 
-            BufferedImage.TYPE_INT_RGB
-        );
+        BufferedImage image = imagePool.acquire(imageWidth, height + (MARGIN * 2), BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0xFFFFFF);
         
-        Graphics2D graphics = image.createGraphics();
-        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        // Fill background
-        graphics.setColor(Color.WHITE);
-        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
-        
-        // Draw QR code
-        graphics.setColor(Color.BLACK);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        // Pixels are written directly; no Graphics2D is created per symbol
+        for (int y = 0; y < height; y++) {
+            int rowStart = (y + MARGIN) * imageWidth + MARGIN;
+            for (int x = 0; x < width; x++) {
                 if (bitMatrix.get(x, y)) {
-                    graphics.fillRect(x + MARGIN, y + MARGIN, 1, 1);
+                    pixels[rowStart + x] = 0;
                 }
             }
         }
-        
-        graphics.dispose();
         return image;
     }
     
+    /**
+     * Returns a rendered image to the pool. The image must not be used afterwards.
+     */
+    public void releaseImage(BufferedImage image) {
+        imagePool.release(image);
+    }
+    
     public void saveQRCode(BufferedImage image, File outputFile) throws IOException {
-        ImageIO.write(image, "PNG", outputFile);
-        logger.info("QR code saved to: {}", outputFile.getAbsolutePath());
+        ByteArrayOutputStream png = encodePNG(image);
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+            Files.write(outputFile.toPath(), png.toByteArray());
+        }
+        metrics.add(PipelineMetrics.Counter.OUTPUT_BYTES, png.size());
+        logger.debug("QR code saved to: {}", outputFile.getAbsolutePath());
+    }
+    
+    /**
+     * Renders, saves and releases a symbol in one step.
+     */
+    public void saveQRCode(QRMatrix matrix, File outputFile) throws IOException {
+        BufferedImage image = renderMatrix(matrix);
+        try {
+            saveQRCode(image, outputFile);
+        } finally {
+            releaseImage(image);
+        }
+    }
+    
+    public void writeQRCode(BufferedImage image, OutputStream out) throws IOException {
+        ByteArrayOutputStream png = encodePNG(image);
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+            png.writeTo(out);
+        }
+        metrics.add(PipelineMetrics.Counter.OUTPUT_BYTES, png.size());
+    }
+    
+    public void writeQRCode(QRMatrix matrix, OutputStream out) throws IOException {
+        BufferedImage image = renderMatrix(matrix);
+        try {
+            writeQRCode(image, out);
+        } finally {
+            releaseImage(image);
+        }
+    }
+    
+    private ByteArrayOutputStream encodePNG(BufferedImage image) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.PNG_ENCODE)) {
+            ImageIO.write(image, "PNG", png);
+        }
+        return png;
     }
     
     public BufferedImage createCompositeImage(List<BufferedImage> qrCodes, int columns) {
         if (qrCodes.isEmpty()) {
             throw new IllegalArgumentException("No QR codes to compose");
         }
-        
-        int qrSize = qrCodes.get(0).getWidth();
-        int rows = (int) Math.ceil((double) qrCodes.size() / columns);
+        return compose(qrCodes.size(), columns, qrCodes::get, false);
+    }
+    
+    /**
+     * Lays out symbols like {@link #createCompositeImage}, rasterizing them one at a time
+     * into a pooled image so that only the composite itself is held in memory.
+     */
+    public BufferedImage composeMatrices(List<QRMatrix> matrices, int columns) {
+        if (matrices.isEmpty()) {
+            throw new IllegalArgumentException("No QR codes to compose");
+        }
+        return compose(matrices.size(), columns, i -> renderMatrix(matrices.get(i)), true);
+    }
+    
+    private BufferedImage compose(int count, int columns, IntFunction<BufferedImage> tiles, boolean releaseTiles) {
+        BufferedImage first = tiles.apply(0);
+        int qrSize = first.getWidth();
+        int rows = (int) Math.ceil((double) count / columns);
         
         int compositeWidth = columns * qrSize + (columns - 1) * MARGIN;
         int compositeHeight = rows * qrSize + (rows - 1) * MARGIN;
         
+        // Symbols are black and white, so an 8-bit gray raster holds them at a quarter of RGB's size
         BufferedImage composite = new BufferedImage(
             compositeWidth + (MARGIN * 2),
             compositeHeight + (MARGIN * 2),
-            BufferedImage.TYPE_INT_RGB
+            BufferedImage.TYPE_BYTE_GRAY
         );
         
         Graphics2D g = composite.createGraphics();
         g.setColor(Color.WHITE);
         g.fillRect(0, 0, composite.getWidth(), composite.getHeight());
+        g.setFont(new Font("Arial", Font.BOLD, 14));
         
-        for (int i = 0; i < qrCodes.size(); i++) {
+        for (int i = 0; i < count; i++) {
             int row = i / columns;
             int col = i % columns;
             
             int x = MARGIN + col * (qrSize + MARGIN);
             int y = MARGIN + row * (qrSize + MARGIN);
             
-            g.drawImage(qrCodes.get(i), x, y, null);
+            BufferedImage tile = i == 0 ? first : tiles.apply(i);
+            g.drawImage(tile, x, y, null);
+            if (releaseTiles) {
+                releaseImage(tile);
+            }
             
             // Add sequence number
             g.setColor(Color.BLACK);
-            g.setFont(new Font("Arial", Font.BOLD, 14));
-            String label = String.format("%d/%d", i + 1, qrCodes.size());
+            String label = String.format("%d/%d", i + 1, count);
             g.drawString(label, x + qrSize / 2 - 20, y + qrSize + 15);
         }
         
@@ -0,0 +1,213 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRLayout;
+
+/**
+ * Picks error correction level, symbol version and chunk size jointly so that a
+ * payload is carried in as few (or as quickly scanned) symbols as possible, with
+ * every symbol filled to the same level.
+ */
+public class QRLayoutOptimizer {
+    private static final int MIN_VERSION = 1;
+    private static final int MAX_VERSION = 40;
+    
+    // UTF-8 ECI designator (4 bit mode + 8 bit value) written by ZXing when a charset hint is set
+    private static final int ECI_HEADER_BITS = 12;
+    private static final int MODE_BITS = 4;
+    private static final int STRUCTURED_APPEND_HEADER_BITS = 20;
+    
+    // Placeholders with the exact width of an MD5 hex digest and a UUID
+    private static final String CHECKSUM_PLACEHOLDER = "00000000000000000000000000000000";
+    private static final String SESSION_PLACEHOLDER = "00000000-0000-0000-0000-000000000000";
+    
+    // Rough scan-time model: fixed acquisition cost plus decode cost per module
+    private static final double SCAN_BASE_MILLIS = 300.0;
+    private static final double SCAN_MILLIS_PER_MODULE = 0.02;
+    
+    // Payload per symbol under the default policy, assuming up to four-digit sequence numbers
+    private static final int DEFAULT_SYMBOL_PAYLOAD =
+        (getByteCapacity(Version.getVersionForNumber(MAX_VERSION), ErrorCorrectionLevel.H)
+            - frameOverhead(FrameFormat.JSON, 9999)) & ~3;
+    
+    public enum Objective {
+        MIN_SYMBOLS,
+        MIN_SCAN_TIME
+    }
+    
+    public static class Policy {
+        public static final Policy DEFAULT = new Policy(ErrorCorrectionLevel.H, MAX_VERSION, Objective.MIN_SYMBOLS);
+        
+        private final ErrorCorrectionLevel minErrorCorrection;
+        private final int maxVersion;
+        private final Objective objective;
+        private final FrameFormat frameFormat;
+        
+        public Policy(ErrorCorrectionLevel minErrorCorrection, int maxVersion, Objective objective) {
+            this(minErrorCorrection, maxVersion, objective, FrameFormat.JSON);
+        }
+        
+        public Policy(ErrorCorrectionLevel minErrorCorrection, int maxVersion, Objective objective,
+                      FrameFormat frameFormat) {
+            if (maxVersion < MIN_VERSION || maxVersion > MAX_VERSION) {
+                throw new IllegalArgumentException("Version must be between 1 and 40: " + maxVersion);
+            }
+            this.minErrorCorrection = minErrorCorrection;
+            this.maxVersion = maxVersion;
+            this.objective = objective;
+            this.frameFormat = frameFormat;
+        }
+        
+        public ErrorCorrectionLevel getMinErrorCorrection() {
+            return minErrorCorrection;
+        }
+        
+        public int getMaxVersion() {
+            return maxVersion;
+        }
+        
+        public Objective getObjective() {
+            return objective;
+        }
+        
+        public FrameFormat getFrameFormat() {
+            return frameFormat;
+        }
+    }
+    
+    public QRLayout optimize(int payloadLength, Policy policy) {
+        FrameFormat format = policy.getFrameFormat();
+        if (format == FrameFormat.STRUCTURED_APPEND) {
+            QRLayout structuredAppend = optimize(payloadLength, policy, format, StructuredAppendEncoder.MAX_SYMBOLS);
+            if (structuredAppend != null) {
+                return structuredAppend;
+            }
+            // Too many symbols for Structured Append, fall back to a compact text header
+            format = FrameFormat.COMPACT;
+        }
+        
+        QRLayout best = optimize(payloadLength, policy, format, Integer.MAX_VALUE);
+        if (best == null) {
+            throw new IllegalArgumentException("Payload of " + payloadLength + " characters cannot be laid out within policy");
+        }
+        return best;
+    }
+    
+    private QRLayout optimize(int payloadLength, Policy policy, FrameFormat format, int maxChunks) {
+        QRLayout best = null;
+        double bestCost = Double.MAX_VALUE;
+        
+        for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+            if (level.ordinal() < policy.getMinErrorCorrection().ordinal()) {
+                continue;
+            }
+            
+            for (int versionNumber = MIN_VERSION; versionNumber <= policy.getMaxVersion(); versionNumber++) {
+                QRLayout candidate = layoutFor(payloadLength, level, versionNumber, format);
+                if (candidate == null || candidate.getChunkCount() > maxChunks) {
+                    continue;
+                }
+                
+                double cost = cost(candidate, policy.getObjective());
+                // Strictly better cost wins; on a tie prefer stronger EC, then the smaller version seen first
+                if (cost < bestCost || (cost == bestCost && level.ordinal() > best.getErrorCorrection().ordinal())) {
+                    best = candidate;
+                    bestCost = cost;
+                }
+            }
+        }
+        return best;
+    }
+    
+    private QRLayout layoutFor(int payloadLength, ErrorCorrectionLevel level, int versionNumber, FrameFormat format) {
+        int capacity = payloadCapacity(Version.getVersionForNumber(versionNumber), level, format);
+        
+        // Frame overhead grows with the digit count of the total, so iterate to a fixed point
+        int chunkCount = 1;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            int perChunk = (capacity - frameOverhead(format, chunkCount)) & ~3;
+            if (perChunk <= 0) {
+                return null;
+            }
+            
+            int required = Math.max(1, ceilDiv(payloadLength, perChunk));
+            if (required == chunkCount) {
+                // Rebalance so all symbols are equally full; keep sizes on Base64 quantum boundaries
+                int chunkSize = roundUpToQuantum(ceilDiv(payloadLength, chunkCount));
+                int balancedCount = chunkSize == 0 ? 1 : ceilDiv(payloadLength, chunkSize);
+                return new QRLayout(level, versionNumber, chunkSize, balancedCount, format);
+            }
+            chunkCount = required;
+        }
+        return null;
+    }
+    
+    private double cost(QRLayout layout, Objective objective) {
+        if (objective == Objective.MIN_SCAN_TIME) {
+            int dimension = Version.getVersionForNumber(layout.getVersion()).getDimensionForVersion();
+            return layout.getChunkCount() * (SCAN_BASE_MILLIS + SCAN_MILLIS_PER_MODULE * dimension * dimension);
+        }
+        return layout.getChunkCount();
+    }
+    
+    public static int estimateSymbolCount(long payloadLength) {
+        // Allocation-free approximation of optimize(...) under Policy.DEFAULT
+        return (int) Math.max(1, (payloadLength + DEFAULT_SYMBOL_PAYLOAD - 1) / DEFAULT_SYMBOL_PAYLOAD);
+    }
+    
+    /**
+     * Returns the strongest error correction level at which every chunk of the layout
+     * still fits a symbol of some version; never weaker than the layout's own level.
+     */
+    public static ErrorCorrectionLevel maxErrorCorrection(QRLayout layout) {
+        FrameFormat format = layout.getFrameFormat();
+        int frameLength = layout.getChunkSize() + frameOverhead(format, layout.getChunkCount());
+        Version largest = Version.getVersionForNumber(MAX_VERSION);
+        
+        ErrorCorrectionLevel strongest = layout.getErrorCorrection();
+        for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+            if (level.ordinal() > strongest.ordinal() && payloadCapacity(largest, level, format) >= frameLength) {
+                strongest = level;
+            }
+        }
+        return strongest;
+    }
+    
+    public static int getByteCapacity(Version version, ErrorCorrectionLevel level) {
+        int dataCodewords = version.getTotalCodewords() - version.getECBlocksForLevel(level).getTotalECCodewords();
+        int dataBits = dataCodewords * 8 - ECI_HEADER_BITS - MODE_BITS - Mode.BYTE.getCharacterCountBits(version);
+        return dataBits / 8;
+    }
+    
+    private static int payloadCapacity(Version version, ErrorCorrectionLevel level, FrameFormat format) {
+        if (format != FrameFormat.STRUCTURED_APPEND) {
+            return getByteCapacity(version, level);
+        }
+        
+        // Structured Append symbols carry plain Latin-1 bytes, so no ECI designator is written
+        int dataCodewords = version.getTotalCodewords() - version.getECBlocksForLevel(level).getTotalECCodewords();
+        int dataBits = dataCodewords * 8 - STRUCTURED_APPEND_HEADER_BITS - MODE_BITS
+            - Mode.BYTE.getCharacterCountBits(version);
+        return dataBits / 8;
+    }
+    
+    static int frameOverhead(FrameFormat format, int totalChunks) {
+        if (format == FrameFormat.STRUCTURED_APPEND) {
+            return 0;
+        }
+        return new QRChunk(totalChunks, totalChunks, "", CHECKSUM_PLACEHOLDER, SESSION_PLACEHOLDER)
+            .toFrameString(format).length();
+    }
+    
+    private static int roundUpToQuantum(int length) {
+        return (length + 3) & ~3;
+    }
+    
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
\ No newline at end of file
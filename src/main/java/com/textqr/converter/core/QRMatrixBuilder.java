@@ -0,0 +1,353 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import com.textqr.converter.model.QRMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Lays final codewords out as an ISO 18004 module grid: function patterns,
+ * format and version information, the zigzag data path and the mask with the
+ * lowest penalty score.
+ */
+final class QRMatrixBuilder {
+    private static final byte EMPTY = -1;
+    private static final int NUM_MASK_PATTERNS = 8;
+    
+    private static final int FORMAT_INFO_POLY = 0x537;
+    private static final int FORMAT_INFO_MASK = 0x5412;
+    private static final int VERSION_INFO_POLY = 0x1F25;
+    
+    // Copy of the format information next to the top left finder, least significant bit first
+    private static final int[][] FORMAT_INFO_COORDINATES = {
+        {8, 0}, {8, 1}, {8, 2}, {8, 3}, {8, 4}, {8, 5}, {8, 7}, {8, 8},
+        {7, 8}, {5, 8}, {4, 8}, {3, 8}, {2, 8}, {1, 8}, {0, 8},
+    };
+    
+    // Mask penalty weights N1 to N4
+    private static final int PENALTY_RUN = 3;
+    private static final int PENALTY_BLOCK = 3;
+    private static final int PENALTY_FINDER_LIKE = 40;
+    private static final int PENALTY_BALANCE = 10;
+    
+    private QRMatrixBuilder() {
+    }
+    
+    static QRMatrix build(byte[] codewords, ErrorCorrectionLevel ecLevel, Version version) {
+        int dimension = version.getDimensionForVersion();
+        byte[][] template = new byte[dimension][dimension];
+        for (byte[] row : template) {
+            Arrays.fill(row, EMPTY);
+        }
+        embedFunctionPatterns(template, version);
+        embedVersionInfo(template, version);
+        
+        byte[][] best = null;
+        int minPenalty = Integer.MAX_VALUE;
+        for (int maskPattern = 0; maskPattern < NUM_MASK_PATTERNS; maskPattern++) {
+            byte[][] modules = new byte[dimension][];
+            for (int y = 0; y < dimension; y++) {
+                modules[y] = template[y].clone();
+            }
+            embedFormatInfo(modules, ecLevel, maskPattern);
+            embedDataBits(modules, codewords, maskPattern);
+            
+            int penalty = penaltyRule1(modules) + penaltyRule2(modules) + penaltyRule3(modules) + penaltyRule4(modules);
+            if (penalty < minPenalty) {
+                minPenalty = penalty;
+                best = modules;
+            }
+        }
+        return toMatrix(best);
+    }
+    
+    private static void embedFunctionPatterns(byte[][] modules, Version version) {
+        int dimension = modules.length;
+        embedFinderPattern(modules, 0, 0);
+        embedFinderPattern(modules, dimension - 7, 0);
+        embedFinderPattern(modules, 0, dimension - 7);
+        
+        // Dark module above the bottom left separator
+        modules[dimension - 8][8] = 1;
+        
+        int[] centers = version.getAlignmentPatternCenters();
+        for (int cy : centers) {
+            for (int cx : centers) {
+                // Skip the positions that collide with finder patterns
+                if (modules[cy][cx] == EMPTY) {
+                    embedAlignmentPattern(modules, cx, cy);
+                }
+            }
+        }
+        
+        for (int i = 8; i < dimension - 8; i++) {
+            byte bit = (byte) ((i + 1) & 1);
+            if (modules[6][i] == EMPTY) {
+                modules[6][i] = bit;
+            }
+            if (modules[i][6] == EMPTY) {
+                modules[i][6] = bit;
+            }
+        }
+    }
+    
+    /**
+     * Draws a 7x7 finder pattern with its top left corner at (left, top), together
+     * with the light separator around it that stays inside the symbol.
+     */
+    private static void embedFinderPattern(byte[][] modules, int left, int top) {
+        int dimension = modules.length;
+        for (int dy = -1; dy <= 7; dy++) {
+            for (int dx = -1; dx <= 7; dx++) {
+                int x = left + dx;
+                int y = top + dy;
+                if (x < 0 || y < 0 || x >= dimension || y >= dimension) {
+                    continue;
+                }
+                int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                modules[y][x] = (byte) (ring == 2 || ring == 4 ? 0 : 1);
+            }
+        }
+    }
+    
+    private static void embedAlignmentPattern(byte[][] modules, int cx, int cy) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                int ring = Math.max(Math.abs(dx), Math.abs(dy));
+                modules[cy + dy][cx + dx] = (byte) (ring == 1 ? 0 : 1);
+            }
+        }
+    }
+    
+    private static void embedFormatInfo(byte[][] modules, ErrorCorrectionLevel ecLevel, int maskPattern) {
+        int dimension = modules.length;
+        int data = (ecLevel.getBits() << 3) | maskPattern;
+        int formatInfo = ((data << 10) | bchCode(data, FORMAT_INFO_POLY)) ^ FORMAT_INFO_MASK;
+        
+        for (int i = 0; i < FORMAT_INFO_COORDINATES.length; i++) {
+            byte bit = (byte) ((formatInfo >>> i) & 1);
+            modules[FORMAT_INFO_COORDINATES[i][1]][FORMAT_INFO_COORDINATES[i][0]] = bit;
+            // Second copy split between the top right and bottom left finders
+            if (i < 8) {
+                modules[8][dimension - 1 - i] = bit;
+            } else {
+                modules[dimension - 7 + (i - 8)][8] = bit;
+            }
+        }
+    }
+    
+    private static void embedVersionInfo(byte[][] modules, Version version) {
+        if (version.getVersionNumber() < 7) {
+            return;
+        }
+        int dimension = modules.length;
+        int versionInfo = (version.getVersionNumber() << 12) | bchCode(version.getVersionNumber(), VERSION_INFO_POLY);
+        
+        // 6x3 blocks next to the top right and bottom left finders, least significant bit first
+        int bitIndex = 0;
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 3; j++) {
+                byte bit = (byte) ((versionInfo >>> bitIndex++) & 1);
+                modules[dimension - 11 + j][i] = bit;
+                modules[i][dimension - 11 + j] = bit;
+            }
+        }
+    }
+    
+    private static int bchCode(int value, int poly) {
+        int polyMsb = 32 - Integer.numberOfLeadingZeros(poly);
+        value <<= polyMsb - 1;
+        while (32 - Integer.numberOfLeadingZeros(value) >= polyMsb) {
+            value ^= poly << (32 - Integer.numberOfLeadingZeros(value) - polyMsb);
+        }
+        return value;
+    }
+    
+    /**
+     * Places codeword bits in two-module columns from the bottom right corner,
+     * zigzagging up and down and skipping the vertical timing pattern. Remainder
+     * modules past the last codeword are light before masking.
+     */
+    private static void embedDataBits(byte[][] modules, byte[] codewords, int maskPattern) {
+        int dimension = modules.length;
+        int numBits = codewords.length * 8;
+        int bitIndex = 0;
+        int direction = -1;
+        int x = dimension - 1;
+        int y = dimension - 1;
+        
+        while (x > 0) {
+            if (x == 6) {
+                x--;
+            }
+            while (y >= 0 && y < dimension) {
+                for (int i = 0; i < 2; i++) {
+                    int xx = x - i;
+                    if (modules[y][xx] != EMPTY) {
+                        continue;
+                    }
+                    boolean bit = false;
+                    if (bitIndex < numBits) {
+                        bit = ((codewords[bitIndex >>> 3] >>> (7 - (bitIndex & 7))) & 1) != 0;
+                        bitIndex++;
+                    }
+                    if (isMasked(maskPattern, xx, y)) {
+                        bit = !bit;
+                    }
+                    modules[y][xx] = (byte) (bit ? 1 : 0);
+                }
+                y += direction;
+            }
+            direction = -direction;
+            y += direction;
+            x -= 2;
+        }
+    }
+    
+    private static boolean isMasked(int maskPattern, int x, int y) {
+        int product = x * y;
+        switch (maskPattern) {
+            case 0:
+                return ((y + x) & 1) == 0;
+            case 1:
+                return (y & 1) == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (y + x) % 3 == 0;
+            case 4:
+                return (((y / 2) + (x / 3)) & 1) == 0;
+            case 5:
+                return (product & 1) + (product % 3) == 0;
+            case 6:
+                return (((product & 1) + (product % 3)) & 1) == 0;
+            case 7:
+                return (((product % 3) + ((y + x) & 1)) & 1) == 0;
+            default:
+                throw new IllegalArgumentException("Invalid mask pattern: " + maskPattern);
+        }
+    }
+    
+    // Runs of five or more same-coloured modules in a row or column
+    private static int penaltyRule1(byte[][] modules) {
+        return runPenalty(modules, true) + runPenalty(modules, false);
+    }
+    
+    private static int runPenalty(byte[][] modules, boolean horizontal) {
+        int dimension = modules.length;
+        int penalty = 0;
+        for (int i = 0; i < dimension; i++) {
+            int run = 0;
+            int previous = -1;
+            for (int j = 0; j < dimension; j++) {
+                int bit = horizontal ? modules[i][j] : modules[j][i];
+                if (bit == previous) {
+                    run++;
+                } else {
+                    if (run >= 5) {
+                        penalty += PENALTY_RUN + (run - 5);
+                    }
+                    run = 1;
+                    previous = bit;
+                }
+            }
+            if (run >= 5) {
+                penalty += PENALTY_RUN + (run - 5);
+            }
+        }
+        return penalty;
+    }
+    
+    // 2x2 blocks of one colour
+    private static int penaltyRule2(byte[][] modules) {
+        int dimension = modules.length;
+        int blocks = 0;
+        for (int y = 0; y < dimension - 1; y++) {
+            for (int x = 0; x < dimension - 1; x++) {
+                byte value = modules[y][x];
+                if (value == modules[y][x + 1] && value == modules[y + 1][x] && value == modules[y + 1][x + 1]) {
+                    blocks++;
+                }
+            }
+        }
+        return PENALTY_BLOCK * blocks;
+    }
+    
+    // 1:1:3:1:1 finder-like runs with four light modules on either side
+    private static int penaltyRule3(byte[][] modules) {
+        int dimension = modules.length;
+        int matches = 0;
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                byte[] row = modules[y];
+                if (x + 6 < dimension
+                        && row[x] == 1 && row[x + 1] == 0 && row[x + 2] == 1 && row[x + 3] == 1
+                        && row[x + 4] == 1 && row[x + 5] == 0 && row[x + 6] == 1
+                        && (isLightRow(row, x - 4, x) || isLightRow(row, x + 7, x + 11))) {
+                    matches++;
+                }
+                if (y + 6 < dimension
+                        && modules[y][x] == 1 && modules[y + 1][x] == 0 && modules[y + 2][x] == 1
+                        && modules[y + 3][x] == 1 && modules[y + 4][x] == 1 && modules[y + 5][x] == 0
+                        && modules[y + 6][x] == 1
+                        && (isLightColumn(modules, x, y - 4, y) || isLightColumn(modules, x, y + 7, y + 11))) {
+                    matches++;
+                }
+            }
+        }
+        return PENALTY_FINDER_LIKE * matches;
+    }
+    
+    // A run cut off by the symbol edge does not count as light
+    private static boolean isLightRow(byte[] row, int from, int to) {
+        if (from < 0 || to > row.length) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (row[i] == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isLightColumn(byte[][] modules, int x, int from, int to) {
+        if (from < 0 || to > modules.length) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (modules[i][x] == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Deviation of the dark module ratio from 50%, in steps of 5%
+    private static int penaltyRule4(byte[][] modules) {
+        int dark = 0;
+        for (byte[] row : modules) {
+            for (byte module : row) {
+                if (module == 1) {
+                    dark++;
+                }
+            }
+        }
+        int total = modules.length * modules.length;
+        return Math.abs(dark * 2 - total) * 10 / total * PENALTY_BALANCE;
+    }
+    
+    private static QRMatrix toMatrix(byte[][] modules) {
+        int dimension = modules.length;
+        long[] bits = QRMatrix.allocateBits(dimension);
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                if (modules[y][x] == 1) {
+                    QRMatrix.setBit(bits, dimension, x, y);
+                }
+            }
+        }
+        return new QRMatrix(dimension, bits);
+    }
+}
\ No newline at end of file
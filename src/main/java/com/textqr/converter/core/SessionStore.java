@@ -0,0 +1,392 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRLayout;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store of generated sessions. Each session is an append-only data file
+ * holding a header (session fields and manifest symbols) followed by one record per
+ * chunk with its frame fields and module matrix, plus a memory-mapped index of record
+ * offsets by sequence number. Reopening a session reads only the header; any chunk can
+ * then be fetched directly without regenerating the others.
+ */
+public class SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    
+    public static final String DATA_EXTENSION = ".tqs";
+    private static final String INDEX_EXTENSION = ".tqi";
+    
+    private static final int DATA_MAGIC = 0x54515331; // "TQS1"
+    private static final int INDEX_MAGIC = 0x54514931; // "TQI1"
+    
+    // Index header: magic, persisted chunk count, end of the last complete record
+    private static final int INDEX_HEADER = 16;
+    
+    private final Path directory;
+    
+    public SessionStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    public List<String> listSessions() throws IOException {
+        List<String> sessionIds = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(DATA_EXTENSION))
+                .sorted()
+                .forEach(name -> sessionIds.add(name.substring(0, name.length() - DATA_EXTENSION.length())));
+        }
+        return sessionIds;
+    }
+    
+    public boolean contains(String sessionId) {
+        return Files.exists(directory.resolve(sessionId + INDEX_EXTENSION));
+    }
+    
+    /**
+     * Writes the session's chunks and matrices. A store left incomplete by an earlier,
+     * interrupted save of the same session is continued after its last complete record.
+     */
+    public void save(QRSession session, QRGenerator generator) throws IOException, WriterException {
+        save(session, new Symbols<WriterException>() {
+            @Override
+            public List<QRMatrix> manifest() throws WriterException {
+                return generator.encodeManifest(session);
+            }
+            
+            @Override
+            public QRMatrix chunk(QRChunk chunk) throws WriterException {
+                return generator.encodeMatrix(session, chunk);
+            }
+        });
+    }
+    
+    /**
+     * Writes the session with symbols that were already encoded, the chunk matrices in
+     * sequence order, so nothing has to be encoded a second time.
+     */
+    public void save(QRSession session, List<QRMatrix> manifest, List<QRMatrix> matrices) throws IOException {
+        if (matrices.size() != session.getChunkCount()) {
+            throw new IllegalArgumentException("Expected " + session.getChunkCount() + " matrices, got "
+                + matrices.size());
+        }
+        save(session, new Symbols<RuntimeException>() {
+            @Override
+            public List<QRMatrix> manifest() {
+                return manifest;
+            }
+            
+            @Override
+            public QRMatrix chunk(QRChunk chunk) {
+                return matrices.get(chunk.getSequenceNumber() - 1);
+            }
+        });
+    }
+    
+    // Symbols to persist; only those not stored yet are asked for
+    private interface Symbols<E extends Exception> {
+        List<QRMatrix> manifest() throws E;
+        
+        QRMatrix chunk(QRChunk chunk) throws E;
+    }
+    
+    private <E extends Exception> void save(QRSession session, Symbols<E> symbols) throws IOException, E {
+        String sessionId = session.getSessionId();
+        List<QRChunk> chunks = session.getChunks();
+        
+        try (FileChannel data = FileChannel.open(directory.resolve(sessionId + DATA_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel indexChannel = FileChannel.open(directory.resolve(sessionId + INDEX_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                INDEX_HEADER + (long) Long.BYTES * chunks.size());
+            
+            int persisted = 0;
+            long end;
+            if (index.getInt(0) == INDEX_MAGIC) {
+                persisted = index.getInt(4);
+                end = index.getLong(8);
+                // Drop whatever a crash left behind the last complete record
+                data.truncate(end);
+                logger.info("Resuming store of session {} after {} chunks", sessionId, persisted);
+            } else {
+                data.truncate(0);
+                end = write(data, 0, header(session, symbols.manifest()));
+                index.putInt(4, 0);
+                index.putLong(8, end);
+                index.putInt(0, INDEX_MAGIC);
+            }
+            
+            for (int i = persisted; i < chunks.size(); i++) {
+                QRChunk chunk = chunks.get(i);
+                long offset = end;
+                end = write(data, offset, record(chunk, symbols.chunk(chunk)));
+                
+                // Record first, then its index entry, then the count that makes it visible
+                index.putLong(INDEX_HEADER + Long.BYTES * (chunk.getSequenceNumber() - 1), offset);
+                index.putLong(8, end);
+                index.putInt(4, i + 1);
+            }
+            data.force(false);
+            index.force();
+        }
+        logger.info("Stored session {} with {} chunks in {}", sessionId, chunks.size(), directory);
+    }
+    
+    public StoredSession open(String sessionId) throws IOException {
+        return openFile(directory.resolve(sessionId + DATA_EXTENSION));
+    }
+    
+    public static StoredSession openFile(Path dataFile) throws IOException {
+        String name = dataFile.getFileName().toString();
+        if (!name.endsWith(DATA_EXTENSION)) {
+            throw new IOException("Not a session store file: " + dataFile);
+        }
+        Path indexFile = dataFile.resolveSibling(name.substring(0, name.length() - DATA_EXTENSION.length())
+            + INDEX_EXTENSION);
+        return new StoredSession(dataFile, indexFile);
+    }
+    
+    private static long write(FileChannel channel, long position, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+    
+    private static byte[] header(QRSession session, List<QRMatrix> manifest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(DATA_MAGIC);
+        out.writeUTF(session.getSessionId());
+        out.writeLong(session.getTotalSize());
+        out.writeUTF(session.getFullChecksum());
+        out.writeUTF(session.getCodec().name());
+        out.writeUTF(session.getCreatedAt().toString());
+        
+        QRLayout layout = session.getLayout();
+        out.writeBoolean(layout != null);
+        if (layout != null) {
+            out.writeUTF(layout.getErrorCorrection().name());
+            out.writeInt(layout.getVersion());
+            out.writeInt(layout.getChunkSize());
+            out.writeInt(layout.getChunkCount());
+            out.writeUTF(layout.getFrameFormat().name());
+        }
+        
+        out.writeInt(session.getChunkCount());
+        out.writeInt(manifest.size());
+        for (QRMatrix matrix : manifest) {
+            writeMatrix(out, matrix);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] record(QRChunk chunk, QRMatrix matrix) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.getData().length() + matrix.getMemoryFootprint() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(chunk.getSequenceNumber());
+        out.writeInt(chunk.getTotalChunks());
+        out.writeUTF(chunk.getChecksum());
+        out.writeUTF(chunk.getData());
+        writeMatrix(out, matrix);
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static void writeMatrix(DataOutputStream out, QRMatrix matrix) throws IOException {
+        out.writeInt(matrix.getDimension());
+        for (long word : matrix.getBits()) {
+            out.writeLong(word);
+        }
+    }
+    
+    private static QRMatrix readMatrix(DataInputStream in) throws IOException {
+        int dimension = in.readInt();
+        long[] bits = QRMatrix.allocateBits(dimension);
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new QRMatrix(dimension, bits);
+    }
+    
+    /**
+     * Read-only view of a stored session. Chunk reads are positional, so a single
+     * instance can serve concurrent readers.
+     */
+    public static class StoredSession implements Closeable {
+        private final FileChannel data;
+        private final MappedByteBuffer index;
+        private final int persistedChunks;
+        private final long end;
+        
+        private final String sessionId;
+        private final long totalSize;
+        private final String fullChecksum;
+        private final PayloadCodec codec;
+        private final LocalDateTime createdAt;
+        private final QRLayout layout;
+        private final int chunkCount;
+        private final List<QRMatrix> manifest;
+        
+        StoredSession(Path dataFile, Path indexFile) throws IOException {
+            if (!Files.exists(indexFile)) {
+                throw new IOException("Session store index not found: " + indexFile);
+            }
+            try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                this.index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            }
+            if (index.capacity() < INDEX_HEADER || index.getInt(0) != INDEX_MAGIC) {
+                throw new IOException("Corrupt session store index: " + indexFile);
+            }
+            this.persistedChunks = index.getInt(4);
+            this.end = index.getLong(8);
+            this.data = FileChannel.open(dataFile, StandardOpenOption.READ);
+            
+            long headerEnd = persistedChunks > 0 ? index.getLong(INDEX_HEADER) : end;
+            try (DataInputStream in = read(0, headerEnd)) {
+                if (in.readInt() != DATA_MAGIC) {
+                    throw new IOException("Not a session store file: " + dataFile);
+                }
+                this.sessionId = in.readUTF();
+                this.totalSize = in.readLong();
+                this.fullChecksum = in.readUTF();
+                this.codec = PayloadCodec.valueOf(in.readUTF());
+                this.createdAt = LocalDateTime.parse(in.readUTF());
+                this.layout = in.readBoolean()
+                    ? new QRLayout(ErrorCorrectionLevel.valueOf(in.readUTF()), in.readInt(), in.readInt(),
+                        in.readInt(), FrameFormat.valueOf(in.readUTF()))
+                    : null;
+                this.chunkCount = in.readInt();
+                
+                int manifestCount = in.readInt();
+                List<QRMatrix> matrices = new ArrayList<>(manifestCount);
+                for (int i = 0; i < manifestCount; i++) {
+                    matrices.add(readMatrix(in));
+                }
+                this.manifest = Collections.unmodifiableList(matrices);
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
+        }
+        
+        private DataInputStream read(long from, long to) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, from + buffer.position()) < 0) {
+                    throw new IOException("Session store data is truncated");
+                }
+            }
+            return new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        }
+        
+        private DataInputStream readRecord(int sequenceNumber) throws IOException {
+            if (sequenceNumber < 1 || sequenceNumber > persistedChunks) {
+                throw new IllegalArgumentException("Chunk " + sequenceNumber + " is not in the store (1-"
+                    + persistedChunks + ")");
+            }
+            long from = index.getLong(INDEX_HEADER + Long.BYTES * (sequenceNumber - 1));
+            long to = sequenceNumber < persistedChunks
+                ? index.getLong(INDEX_HEADER + Long.BYTES * sequenceNumber)
+                : end;
+            return read(from, to);
+        }
+        
+        public QRChunk getChunk(int sequenceNumber) throws IOException {
+            try (DataInputStream in = readRecord(sequenceNumber)) {
+                int sequence = in.readInt();
+                int total = in.readInt();
+                String checksum = in.readUTF();
+                String chunkData = in.readUTF();
+                return new QRChunk(sequence, total, chunkData, checksum, sessionId);
+            }
+        }
+        
+        public QRMatrix getMatrix(int sequenceNumber) throws IOException {
+            try (DataInputStream in = readRecord(sequenceNumber)) {
+                // Skip the frame fields in front of the matrix
+                in.readInt();
+                in.readInt();
+                in.readUTF();
+                in.readUTF();
+                return readMatrix(in);
+            }
+        }
+        
+        /**
+         * Rebuilds the session with its original id from the stored chunks. A store whose
+         * save was interrupted yields only the chunks persisted so far; check
+         * {@link #isComplete()} before exporting it.
+         */
+        public QRSession toSession() throws IOException {
+            QRSession session = new QRSession(sessionId, totalSize, fullChecksum, layout, codec, createdAt);
+            for (int sequence = 1; sequence <= persistedChunks; sequence++) {
+                session.addChunk(getChunk(sequence));
+            }
+            return session;
+        }
+        
+        public boolean isComplete() {
+            return persistedChunks == chunkCount;
+        }
+        
+        public String getSessionId() {
+            return sessionId;
+        }
+        
+        public int getChunkCount() {
+            return chunkCount;
+        }
+        
+        public int getStoredChunkCount() {
+            return persistedChunks;
+        }
+        
+        public QRLayout getLayout() {
+            return layout;
+        }
+        
+        public List<QRMatrix> getManifest() {
+            return manifest;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.reedsolomon.GenericGF;
+import com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.textqr.converter.model.QRMatrix;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds QR symbols that start with an ISO 18004 Structured Append header.
+ * ZXing's public Encoder cannot emit that header, so the bit stream and its
+ * error correction are assembled here and laid out by {@link QRMatrixBuilder}.
+ */
+public final class StructuredAppendEncoder {
+    public static final int MAX_SYMBOLS = 16;
+    
+    private static final int PAD_CODEWORD_EVEN = 0xEC;
+    private static final int PAD_CODEWORD_ODD = 0x11;
+    private static final int TERMINATOR_BITS = 4;
+    
+    private StructuredAppendEncoder() {
+    }
+    
+    public static QRMatrix encode(String content, ErrorCorrectionLevel ecLevel, Version version,
+                                  int index, int total, int parity) throws WriterException {
+        if (total < 1 || total > MAX_SYMBOLS || index < 0 || index >= total) {
+            throw new WriterException("Invalid structured append position " + index + " of " + total);
+        }
+        
+        // Header: mode (4), symbol position (4), total symbols - 1 (4), parity (8)
+        BitArray bits = new BitArray();
+        bits.appendBits(Mode.STRUCTURED_APPEND.getBits(), 4);
+        bits.appendBits(index, 4);
+        bits.appendBits(total - 1, 4);
+        bits.appendBits(parity & 0xFF, 8);
+        
+        return encodeByteSegment(bits, content, ecLevel, version);
+    }
+    
+    /**
+     * Appends {@code content} as one ISO-8859-1 byte mode segment to {@code bits}
+     * and lays the padded, error corrected stream out as a single symbol.
+     */
+    static QRMatrix encodeByteSegment(BitArray bits, String content, ErrorCorrectionLevel ecLevel,
+                                      Version version) throws WriterException {
+        byte[] bytes = content.getBytes(StandardCharsets.ISO_8859_1);
+        bits.appendBits(Mode.BYTE.getBits(), 4);
+        bits.appendBits(bytes.length, Mode.BYTE.getCharacterCountBits(version));
+        for (byte b : bytes) {
+            bits.appendBits(b & 0xFF, 8);
+        }
+        
+        Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+        int numDataBytes = version.getTotalCodewords() - ecBlocks.getTotalECCodewords();
+        if (bits.getSize() > numDataBytes * 8) {
+            throw new WriterException("Data too big for requested version");
+        }
+        terminate(bits, numDataBytes);
+        
+        byte[] dataCodewords = new byte[numDataBytes];
+        bits.toBytes(0, dataCodewords, 0, numDataBytes);
+        return QRMatrixBuilder.build(interleaveWithECBytes(dataCodewords, ecBlocks), ecLevel, version);
+    }
+    
+    private static void terminate(BitArray bits, int numDataBytes) {
+        int capacity = numDataBytes * 8;
+        for (int i = 0; i < TERMINATOR_BITS && bits.getSize() < capacity; i++) {
+            bits.appendBit(false);
+        }
+        int partialBits = bits.getSize() & 7;
+        if (partialBits > 0) {
+            bits.appendBits(0, 8 - partialBits);
+        }
+        for (int i = 0; bits.getSize() < capacity; i++) {
+            bits.appendBits((i & 1) == 0 ? PAD_CODEWORD_EVEN : PAD_CODEWORD_ODD, 8);
+        }
+    }
+    
+    /**
+     * Splits the data codewords into the version's blocks, appends Reed-Solomon
+     * codewords to each and interleaves them column-wise, data first.
+     */
+    private static byte[] interleaveWithECBytes(byte[] dataCodewords, Version.ECBlocks ecBlocks) {
+        int numECBytes = ecBlocks.getECCodewordsPerBlock();
+        int numBlocks = ecBlocks.getNumBlocks();
+        byte[][] dataBlocks = new byte[numBlocks][];
+        byte[][] ecCodewordBlocks = new byte[numBlocks][];
+        ReedSolomonEncoder rsEncoder = new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256);
+        
+        int block = 0;
+        int offset = 0;
+        int maxDataBytes = 0;
+        for (Version.ECB group : ecBlocks.getECBlocks()) {
+            for (int i = 0; i < group.getCount(); i++) {
+                int numDataBytes = group.getDataCodewords();
+                int[] toEncode = new int[numDataBytes + numECBytes];
+                for (int j = 0; j < numDataBytes; j++) {
+                    toEncode[j] = dataCodewords[offset + j] & 0xFF;
+                }
+                rsEncoder.encode(toEncode, numECBytes);
+                
+                byte[] ecBytes = new byte[numECBytes];
+                for (int j = 0; j < numECBytes; j++) {
+                    ecBytes[j] = (byte) toEncode[numDataBytes + j];
+                }
+                dataBlocks[block] = Arrays.copyOfRange(dataCodewords, offset, offset + numDataBytes);
+                ecCodewordBlocks[block] = ecBytes;
+                maxDataBytes = Math.max(maxDataBytes, numDataBytes);
+                offset += numDataBytes;
+                block++;
+            }
+        }
+        
+        byte[] codewords = new byte[offset + numBlocks * numECBytes];
+        int position = 0;
+        for (int i = 0; i < maxDataBytes; i++) {
+            for (byte[] dataBlock : dataBlocks) {
+                if (i < dataBlock.length) {
+                    codewords[position++] = dataBlock[i];
+                }
+            }
+        }
+        for (int i = 0; i < numECBytes; i++) {
+            for (byte[] ecBytes : ecCodewordBlocks) {
+                codewords[position++] = ecBytes[i];
+            }
+        }
+        return codewords;
+    }
+}
\ No newline at end of file
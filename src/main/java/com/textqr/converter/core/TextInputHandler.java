@@ -1,5 +1,8 @@
 package com.textqr.converter.core;
 
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PipelineMetrics;
+import com.textqr.converter.util.TextNormalizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,12 +11,21 @@ import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.StringSelection;
 import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class TextInputHandler {
     private static final Logger logger = LoggerFactory.getLogger(TextInputHandler.class);
@@ -38,11 +50,76 @@ public class TextInputHandler {
         
         byte[] content = Files.readAllBytes(path);
         String text = new String(content, StandardCharsets.UTF_8);
+        PipelineMetrics.getInstance().add(PipelineMetrics.Counter.INPUT_BYTES, content.length);
         
         logger.info("Successfully read {} bytes from file", content.length);
         return text;
     }
     
+    public byte[] readNormalized(String filePath, TextNormalizer normalizer) throws IOException {
+        logger.info("Reading and normalizing text from file: {}", filePath);
+        
+        Path path = Paths.get(filePath);
+        long size = Files.size(path);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File is too large to normalize into memory: " + filePath);
+        }
+        
+        // Decode and normalize while streaming so only the normalized copy is held
+        try (Reader reader = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8);
+             PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.NORMALIZE)) {
+            byte[] normalized = normalizer.normalizeToUtf8(reader, (int) size);
+            PipelineMetrics.getInstance().add(PipelineMetrics.Counter.INPUT_BYTES, size);
+            logger.info("Successfully read {} bytes from file", size);
+            return normalized;
+        }
+    }
+    
+    public byte[] readFromStream(InputStream in) throws IOException {
+        logger.info("Reading bytes from stream");
+        
+        byte[] content = in.readAllBytes();
+        PipelineMetrics.getInstance().add(PipelineMetrics.Counter.INPUT_BYTES, content.length);
+        
+        logger.info("Successfully read {} bytes from stream", content.length);
+        return content;
+    }
+    
+    public byte[] readNormalized(InputStream in, TextNormalizer normalizer) throws IOException {
+        logger.info("Reading and normalizing text from stream");
+        
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.NORMALIZE)) {
+            byte[] normalized = normalizer.normalizeToUtf8(reader, 8192);
+            logger.info("Successfully read and normalized {} bytes from stream", normalized.length);
+            return normalized;
+        }
+    }
+    
+    public MappedFile mapFile(String filePath) throws IOException {
+        logger.info("Mapping file: {}", filePath);
+        
+        // Opening the channel reports missing or unreadable files itself
+        MappedFile file;
+        try {
+            file = MappedFile.open(Paths.get(filePath));
+        } catch (NoSuchFileException e) {
+            throw new IOException("File not found: " + filePath, e);
+        }
+        logger.info("Mapped {} bytes from file", file.size());
+        return file;
+    }
+    
+    public List<String> readLines(BufferedReader reader, int maxLines) throws IOException {
+        // Reads at most one page of lines; the reader stays open for the next page
+        List<String> lines = new ArrayList<>(Math.min(maxLines, 1024));
+        String line;
+        while (lines.size() < maxLines && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+    
     public String readFromFile(File file) throws IOException {
         return readFromFile(file.getAbsolutePath());
     }
@@ -93,48 +170,130 @@ public class TextInputHandler {
     }
     
     public String validateAndNormalizeText(String text) {
-        if (text == null) {
-            return "";
+        // Line endings, NUL removal and trimming in one pass
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.NORMALIZE)) {
+            return TextNormalizer.DEFAULT.normalize(text);
         }
-        
-        // Normalize line endings
-        text = text.replaceAll("\r\n", "\n").replaceAll("\r", "\n");
-        
-        // Remove any null characters
-        text = text.replace("\0", "");
-        
-        // Trim trailing whitespace
-        text = text.trim();
-        
-        return text;
     }
     
-    public InputStatistics analyzeInput(String text) {
+    public InputStatistics analyzeInput(CharSequence text) {
         return new InputStatistics(text);
     }
     
+    public InputStatistics analyzeInput(MappedFile file) {
+        return new InputStatistics(file);
+    }
+    
+    public InputStatistics analyzeInput(byte[] data) {
+        return new InputStatistics(data);
+    }
+    
     public static class InputStatistics {
-        private final int totalCharacters;
-        private final int totalLines;
-        private final int totalBytes;
+        private final long totalCharacters;
+        private final long totalLines;
+        private final long totalBytes;
         private final boolean hasNonAscii;
+        private final int estimatedQRCount;
+        
+        public InputStatistics(CharSequence text) {
+            int length = text.length();
+            int lines = 0;
+            int segment = 1;
+            long bytes = 0;
+            boolean nonAscii = false;
+            
+            // Single pass: no split, no re-encoding, no regex
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    segment++;
+                    bytes++;
+                    continue;
+                }
+                
+                // Same count as split("\n"): trailing empty lines are not counted
+                lines = segment;
+                
+                if (c < 0x80) {
+                    bytes++;
+                } else {
+                    nonAscii = true;
+                    if (c < 0x800) {
+                        bytes += 2;
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        bytes += 4;
+                        i++;
+                    } else if (Character.isSurrogate(c)) {
+                        bytes++; // Unpaired surrogate is replaced by '?'
+                    } else {
+                        bytes += 3;
+                    }
+                }
+            }
+            
+            this.totalCharacters = length;
+            this.totalLines = length == 0 ? 1 : lines;
+            this.totalBytes = bytes;
+            this.hasNonAscii = nonAscii;
+            this.estimatedQRCount = QRLayoutOptimizer.estimateSymbolCount((bytes + 2) / 3 * 4);
+        }
+        
+        /**
+         * Counts a mapped file as UTF-8 straight from its buffers, without decoding it.
+         */
+        public InputStatistics(MappedFile file) {
+            this(file.buffers(), file.size());
+        }
         
-        public InputStatistics(String text) {
-            this.totalCharacters = text.length();
-            this.totalLines = text.split("\n").length;
-            this.totalBytes = text.getBytes(StandardCharsets.UTF_8).length;
-            this.hasNonAscii = !text.matches("\\p{ASCII}*");
+        public InputStatistics(byte[] data) {
+            this(Collections.singletonList(ByteBuffer.wrap(data)), data.length);
         }
         
-        public int getTotalCharacters() {
+        private InputStatistics(List<ByteBuffer> buffers, long bytes) {
+            long characters = 0;
+            long lines = 0;
+            long segment = 1;
+            boolean nonAscii = false;
+            
+            for (ByteBuffer buffer : buffers) {
+                for (int i = buffer.position(); i < buffer.limit(); i++) {
+                    int b = buffer.get(i) & 0xFF;
+                    // Continuation bytes belong to the character their lead byte started
+                    if ((b & 0xC0) != 0x80) {
+                        characters++;
+                    }
+                    if (b == '\n') {
+                        segment++;
+                        continue;
+                    }
+                    
+                    lines = segment;
+                    if (b >= 0x80) {
+                        nonAscii = true;
+                        if (b >= 0xF0) {
+                            characters++; // Four-byte sequences decode to a surrogate pair
+                        }
+                    }
+                }
+            }
+            
+            this.totalCharacters = characters;
+            this.totalLines = characters == 0 ? 1 : lines;
+            this.totalBytes = bytes;
+            this.hasNonAscii = nonAscii;
+            this.estimatedQRCount = QRLayoutOptimizer.estimateSymbolCount((bytes + 2) / 3 * 4);
+        }
+        
+        public long getTotalCharacters() {
             return totalCharacters;
         }
         
-        public int getTotalLines() {
+        public long getTotalLines() {
             return totalLines;
         }
         
-        public int getTotalBytes() {
+        public long getTotalBytes() {
             return totalBytes;
         }
         
@@ -142,11 +301,15 @@ public class TextInputHandler {
             return hasNonAscii;
         }
         
+        public int getEstimatedQRCount() {
+            return estimatedQRCount;
+        }
+        
         @Override
         public String toString() {
             return String.format(
-                "Characters: %d, Lines: %d, Bytes: %d, Non-ASCII: %s",
-                totalCharacters, totalLines, totalBytes, hasNonAscii ? "Yes" : "No"
+                "Characters: %d, Lines: %d, Bytes: %d, Non-ASCII: %s, Estimated QR codes: %d",
+                totalCharacters, totalLines, totalBytes, hasNonAscii ? "Yes" : "No", estimatedQRCount
             );
         }
     }
@@ -0,0 +1,240 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which chunk to display next and how fast, from the receiver's
+ * acknowledgements. Unconfirmed chunks are shown least-shown first, round robin.
+ * Every few frames the share of them that got confirmed steers the frame rate
+ * (additive increase, multiplicative decrease); when even the slowest rate loses
+ * frames, chunks are re-encoded at a higher error correction level, in whatever
+ * larger version that takes, and relaxed back once the link is clean again. Levels
+ * at which a chunk would no longer fit even the largest version are never used.
+ */
+public class TransmitScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(TransmitScheduler.class);
+    
+    // Frames shown between two rate decisions
+    static final int DECISION_WINDOW = 8;
+    
+    private static final double GOOD_DELIVERY = 0.9;
+    private static final double POOR_DELIVERY = 0.7;
+    private static final double RATE_INCREASE = 1.0;
+    private static final double RATE_DECREASE = 0.5;
+    
+    public interface FrameSink {
+        void show(QRChunk chunk, QRMatrix matrix) throws IOException;
+    }
+    
+    private final QRSession session;
+    private final double minFrameRate;
+    private final double maxFrameRate;
+    private final ErrorCorrectionLevel baseErrorCorrection;
+    // Strongest level at which the layout's chunks still fit a symbol
+    private final ErrorCorrectionLevel maxErrorCorrection;
+    private final boolean[] acknowledged;
+    private final int[] timesShown;
+    private int unacknowledged;
+    private int cursor;
+    private int framesShown;
+    
+    private double frameRate;
+    private ErrorCorrectionLevel errorCorrection;
+    private int windowFrames;
+    private int windowAcknowledged;
+    
+    public TransmitScheduler(QRSession session, double minFrameRate, double maxFrameRate) {
+        if (minFrameRate <= 0 || maxFrameRate < minFrameRate) {
+            throw new IllegalArgumentException("Invalid frame rate range " + minFrameRate + "-" + maxFrameRate);
+        }
+        this.session = session;
+        this.minFrameRate = minFrameRate;
+        this.maxFrameRate = maxFrameRate;
+        this.baseErrorCorrection = session.getLayout() != null
+            ? session.getLayout().getErrorCorrection()
+            : ErrorCorrectionLevel.H;
+        this.acknowledged = new boolean[session.getChunkCount()];
+        this.timesShown = new int[session.getChunkCount()];
+        this.unacknowledged = session.getChunkCount();
+        this.cursor = session.getChunkCount() - 1;
+        
+        // Start halfway so both a fast and a slow camera are reached within a few windows
+        this.frameRate = (minFrameRate + maxFrameRate) / 2;
+        this.maxErrorCorrection = session.getLayout() != null
+            ? QRLayoutOptimizer.maxErrorCorrection(session.getLayout())
+            : ErrorCorrectionLevel.H;
+        this.errorCorrection = baseErrorCorrection;
+    }
+    
+    /**
+     * Returns the unconfirmed chunk shown the fewest times, or null once every chunk
+     * is confirmed.
+     */
+    public synchronized QRChunk nextChunk() {
+        if (unacknowledged == 0) {
+            return null;
+        }
+        
+        int count = acknowledged.length;
+        int best = -1;
+        for (int step = 1; step <= count; step++) {
+            int index = (cursor + step) % count;
+            if (!acknowledged[index] && (best < 0 || timesShown[index] < timesShown[best])) {
+                best = index;
+            }
+        }
+        return session.getChunks().get(best);
+    }
+    
+    public synchronized void frameShown(QRChunk chunk) {
+        int index = chunk.getSequenceNumber() - 1;
+        timesShown[index]++;
+        cursor = index;
+        framesShown++;
+        
+        if (++windowFrames >= DECISION_WINDOW) {
+            adapt((double) windowAcknowledged / windowFrames);
+            windowFrames = 0;
+            windowAcknowledged = 0;
+        }
+    }
+    
+    /**
+     * Records confirmed chunks and returns how many of them were new.
+     */
+    public synchronized int acknowledge(Collection<Integer> sequenceNumbers) {
+        int confirmed = 0;
+        for (int sequence : sequenceNumbers) {
+            int index = sequence - 1;
+            if (index >= 0 && index < acknowledged.length && !acknowledged[index]) {
+                acknowledged[index] = true;
+                confirmed++;
+            }
+        }
+        unacknowledged -= confirmed;
+        windowAcknowledged += confirmed;
+        return confirmed;
+    }
+    
+    private void adapt(double delivery) {
+        if (delivery >= GOOD_DELIVERY) {
+            if (frameRate < maxFrameRate) {
+                frameRate = Math.min(maxFrameRate, frameRate + RATE_INCREASE);
+            } else if (errorCorrection.ordinal() > baseErrorCorrection.ordinal()) {
+                errorCorrection = ErrorCorrectionLevel.values()[errorCorrection.ordinal() - 1];
+                logger.debug("Clean link at {} fps, relaxing error correction to {}", frameRate, errorCorrection);
+            }
+        } else if (delivery < POOR_DELIVERY) {
+            if (frameRate > minFrameRate) {
+                frameRate = Math.max(minFrameRate, frameRate * RATE_DECREASE);
+            } else if (errorCorrection.ordinal() < maxErrorCorrection.ordinal()) {
+                errorCorrection = ErrorCorrectionLevel.values()[errorCorrection.ordinal() + 1];
+                logger.debug("Losing frames at {} fps, raising error correction to {}", frameRate, errorCorrection);
+            }
+        }
+    }
+    
+    /**
+     * Shows chunks until the receiver has confirmed all of them or the timeout passes,
+     * reading acknowledgements from the channel between frames. Returns whether the
+     * transfer completed.
+     */
+    public boolean run(QRGenerator generator, AckChannel channel, FrameSink sink, long timeoutMillis)
+            throws IOException, WriterException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<Integer, QRMatrix> matrices = new HashMap<>();
+        ErrorCorrectionLevel matrixLevel = null;
+        
+        while (true) {
+            for (String line : channel.poll()) {
+                try {
+                    acknowledge(AckChannel.parse(line, session));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Ignoring malformed acknowledgement '{}': {}", line, e.getMessage());
+                }
+            }
+            
+            QRChunk chunk = nextChunk();
+            if (chunk == null) {
+                logger.info("Receiver confirmed all {} chunks after {} frames", acknowledged.length, getFramesShown());
+                return true;
+            }
+            long frameStart = System.nanoTime();
+            if (frameStart >= deadline) {
+                logger.warn("Transmission timed out with {} chunks unconfirmed", getUnacknowledged().size());
+                return false;
+            }
+            
+            // Matrices are cached for the current level only
+            ErrorCorrectionLevel level = getErrorCorrection();
+            if (level != matrixLevel) {
+                matrices.clear();
+                matrixLevel = level;
+            }
+            QRMatrix matrix = matrices.get(chunk.getSequenceNumber());
+            if (matrix == null) {
+                matrix = generator.encodeMatrix(session, chunk, level);
+                matrices.put(chunk.getSequenceNumber(), matrix);
+            }
+            
+            sink.show(chunk, matrix);
+            frameShown(chunk);
+            
+            long remaining = getFrameIntervalMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - frameStart);
+            if (remaining > 0) {
+                Thread.sleep(remaining);
+            }
+        }
+    }
+    
+    public synchronized boolean isComplete() {
+        return unacknowledged == 0;
+    }
+    
+    public synchronized List<Integer> getUnacknowledged() {
+        List<Integer> sequences = new ArrayList<>(unacknowledged);
+        for (int i = 0; i < acknowledged.length; i++) {
+            if (!acknowledged[i]) {
+                sequences.add(i + 1);
+            }
+        }
+        return sequences;
+    }
+    
+    public synchronized double getFrameRate() {
+        return frameRate;
+    }
+    
+    public synchronized long getFrameIntervalMillis() {
+        return Math.round(1000.0 / frameRate);
+    }
+    
+    public synchronized ErrorCorrectionLevel getErrorCorrection() {
+        return errorCorrection;
+    }
+    
+    public synchronized int getFramesShown() {
+        return framesShown;
+    }
+    
+    /**
+     * Confirmed chunks per frame shown so far, 1.0 meaning no frame was wasted.
+     */
+    public synchronized double getGoodput() {
+        return framesShown == 0 ? 0 : (double) (acknowledged.length - unacknowledged) / framesShown;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.textqr.converter.model;
+
+public enum FrameFormat {
+    // Sequencing metadata inside a JSON body
+    JSON,
+    // ISO 18004 Structured Append header, body carries payload only (up to 16 symbols)
+    STRUCTURED_APPEND,
+    // Short text header for sessions too large for Structured Append
+    COMPACT
+}
\ No newline at end of file
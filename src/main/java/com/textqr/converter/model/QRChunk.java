@@ -3,6 +3,9 @@ package com.textqr.converter.model;
 import java.time.LocalDateTime;
 
 public class QRChunk {
+    private static final String COMPACT_PREFIX = "TQ:";
+    private static final int SHORT_ID_LENGTH = 8;
+
     private final int sequenceNumber;
     private final int totalChunks;
     private final String data;
@@ -43,6 +46,40 @@ public class QRChunk {
         return sessionId;
     }
 
+    public String toCompactString() {
+        return String.format("%s%d/%d:%s:%s:%s", COMPACT_PREFIX, sequenceNumber, totalChunks,
+                shorten(sessionId), shorten(checksum), data);
+    }
+
+    public String toFrameString(FrameFormat format) {
+        switch (format) {
+            case STRUCTURED_APPEND:
+                return data;
+            case COMPACT:
+                return toCompactString();
+            default:
+                return toJsonString();
+        }
+    }
+
+    public static QRChunk fromCompactString(String frame) {
+        if (!frame.startsWith(COMPACT_PREFIX)) {
+            throw new IllegalArgumentException("Not a compact frame");
+        }
+
+        // Payload is Base64 and may contain '/', so split the header fields only
+        String[] parts = frame.substring(COMPACT_PREFIX.length()).split(":", 4);
+        String[] position = parts.length == 4 ? parts[0].split("/") : new String[0];
+        if (position.length != 2) {
+            throw new IllegalArgumentException("Malformed compact frame header");
+        }
+        return new QRChunk(Integer.parseInt(position[0]), Integer.parseInt(position[1]), parts[3], parts[2], parts[1]);
+    }
+
+    private static String shorten(String value) {
+        return value.length() > SHORT_ID_LENGTH ? value.substring(0, SHORT_ID_LENGTH) : value;
+    }
+
     public String toJsonString() {
         return String.format("{\"seq\":%d,\"total\":%d,\"data\":\"%s\",\"checksum\":\"%s\",\"session\":\"%s\"}",
                 sequenceNumber, totalChunks, data, checksum, sessionId);
@@ -0,0 +1,50 @@
+package com.textqr.converter.model;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+public class QRLayout {
+    private final ErrorCorrectionLevel errorCorrection;
+    private final int version;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final FrameFormat frameFormat;
+
+    public QRLayout(ErrorCorrectionLevel errorCorrection, int version, int chunkSize, int chunkCount) {
+        this(errorCorrection, version, chunkSize, chunkCount, FrameFormat.JSON);
+    }
+
+    public QRLayout(ErrorCorrectionLevel errorCorrection, int version, int chunkSize, int chunkCount,
+                    FrameFormat frameFormat) {
+        this.errorCorrection = errorCorrection;
+        this.version = version;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+        this.frameFormat = frameFormat;
+    }
+
+    public ErrorCorrectionLevel getErrorCorrection() {
+        return errorCorrection;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public FrameFormat getFrameFormat() {
+        return frameFormat;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EC %s, version %d, %d chunk(s) of up to %d characters, %s frames",
+                errorCorrection, version, chunkCount, chunkSize, frameFormat);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.textqr.converter.model;
+
+import com.textqr.converter.util.ChecksumUtil;
+import com.textqr.converter.util.PayloadCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Session index carried in its own QR symbols: session id, original size, codec,
+ * chunk count, full SHA-256 and a truncated hash of every chunk. A receiver that has
+ * scanned the manifest can validate each chunk on arrival and list the missing ones.
+ */
+public class QRManifest {
+    private static final String PREFIX = "TQM:";
+    private static final int HASH_HEX_LENGTH = 8;
+    private static final int HEADER_FIELDS = 8;
+
+    private final String sessionId;
+    private final long totalSize;
+    private final PayloadCodec codec;
+    private final int chunkCount;
+    private final String fullChecksum;
+    private final int[] chunkHashes;
+
+    public QRManifest(String sessionId, long totalSize, PayloadCodec codec, int chunkCount,
+                      String fullChecksum, int[] chunkHashes) {
+        if (chunkHashes.length != chunkCount) {
+            throw new IllegalArgumentException("Expected " + chunkCount + " chunk hashes, got " + chunkHashes.length);
+        }
+        this.sessionId = sessionId;
+        this.totalSize = totalSize;
+        this.codec = codec;
+        this.chunkCount = chunkCount;
+        this.fullChecksum = fullChecksum;
+        this.chunkHashes = chunkHashes.clone();
+    }
+
+    public static QRManifest of(QRSession session) {
+        List<QRChunk> chunks = session.getChunks();
+        int[] hashes = new int[chunks.size()];
+        for (QRChunk chunk : chunks) {
+            hashes[chunk.getSequenceNumber() - 1] = truncatedHash(chunk.getChecksum());
+        }
+        return new QRManifest(session.getSessionId(), session.getTotalSize(), session.getCodec(),
+                chunks.size(), session.getFullChecksum(), hashes);
+    }
+
+    public static boolean isManifestFrame(String frame) {
+        return frame.startsWith(PREFIX);
+    }
+
+    /**
+     * Splits the manifest into frames of at most maxFrameLength characters, each
+     * carrying the full header and a contiguous range of chunk hashes.
+     */
+    public List<String> toFrameStrings(int maxFrameLength) {
+        // Size the hash ranges against the widest header this manifest can produce
+        int headerLength = header(chunkCount, chunkCount, chunkCount).length();
+        int base64Groups = (maxFrameLength - headerLength) / 4;
+        int hashesPerFrame = base64Groups * 3 / Integer.BYTES;
+        if (hashesPerFrame <= 0) {
+            throw new IllegalArgumentException("Frame length " + maxFrameLength + " is too small for a manifest");
+        }
+
+        int frameCount = Math.max(1, (chunkCount + hashesPerFrame - 1) / hashesPerFrame);
+        List<String> frames = new ArrayList<>(frameCount);
+        for (int frame = 0; frame < frameCount; frame++) {
+            int first = frame * hashesPerFrame;
+            int count = Math.min(hashesPerFrame, chunkCount - first);
+
+            ByteBuffer packed = ByteBuffer.allocate(count * Integer.BYTES);
+            for (int i = 0; i < count; i++) {
+                packed.putInt(chunkHashes[first + i]);
+            }
+            frames.add(header(frame + 1, frameCount, first + 1)
+                    + Base64.getEncoder().encodeToString(packed.array()));
+        }
+        return frames;
+    }
+
+    private String header(int index, int frameCount, int firstSequence) {
+        return String.format("%s%d/%d:%s:%d:%s:%d:%s:%d:", PREFIX, index, frameCount, sessionId, totalSize,
+                codec.name(), chunkCount, fullChecksum, firstSequence);
+    }
+
+    /**
+     * Rebuilds a manifest from all of its frames, in any order.
+     */
+    public static QRManifest parse(Collection<String> frames) {
+        QRManifest manifest = null;
+        int[] hashes = null;
+        Set<Integer> seenFrames = new HashSet<>();
+        int frameCount = 0;
+
+        for (String frame : frames) {
+            if (!isManifestFrame(frame)) {
+                throw new IllegalArgumentException("Not a manifest frame");
+            }
+
+            String[] parts = frame.substring(PREFIX.length()).split(":", HEADER_FIELDS);
+            if (parts.length != HEADER_FIELDS) {
+                throw new IllegalArgumentException("Malformed manifest frame header");
+            }
+            String[] position = parts[0].split("/");
+            int index = Integer.parseInt(position[0]);
+            frameCount = Integer.parseInt(position[1]);
+            int chunkCount = Integer.parseInt(parts[4]);
+
+            if (manifest == null) {
+                hashes = new int[chunkCount];
+                manifest = new QRManifest(parts[1], Long.parseLong(parts[2]), PayloadCodec.valueOf(parts[3]),
+                        chunkCount, parts[5], hashes);
+            } else if (!manifest.sessionId.equals(parts[1])) {
+                throw new IllegalArgumentException("Manifest frames belong to different sessions");
+            }
+
+            int first = Integer.parseInt(parts[6]) - 1;
+            ByteBuffer packed = ByteBuffer.wrap(Base64.getDecoder().decode(parts[7]));
+            for (int i = first; packed.remaining() >= Integer.BYTES; i++) {
+                hashes[i] = packed.getInt();
+            }
+            seenFrames.add(index);
+        }
+
+        if (manifest == null || seenFrames.size() != frameCount) {
+            throw new IllegalArgumentException("Missing manifest frames: have " + seenFrames.size() + " of " + frameCount);
+        }
+        return new QRManifest(manifest.sessionId, manifest.totalSize, manifest.codec, manifest.chunkCount,
+                manifest.fullChecksum, hashes);
+    }
+
+    public boolean verifyChunk(QRChunk chunk) {
+        return verifyChunk(chunk.getSequenceNumber(), chunk.getData());
+    }
+
+    public boolean verifyChunk(int sequenceNumber, String data) {
+        if (sequenceNumber < 1 || sequenceNumber > chunkCount) {
+            return false;
+        }
+        String checksum = ChecksumUtil.calculateChunkChecksum(sequenceNumber, data);
+        return truncatedHash(checksum) == chunkHashes[sequenceNumber - 1];
+    }
+
+    public List<Integer> getMissingSequenceNumbers(Collection<Integer> received) {
+        Set<Integer> have = new HashSet<>(received);
+        List<Integer> missing = new ArrayList<>();
+        for (int sequence = 1; sequence <= chunkCount; sequence++) {
+            if (!have.contains(sequence)) {
+                missing.add(sequence);
+            }
+        }
+        return missing;
+    }
+
+    public boolean verifyText(String text) {
+        return ChecksumUtil.verifyChecksum(text, fullChecksum);
+    }
+
+    private static int truncatedHash(String checksum) {
+        return Integer.parseUnsignedInt(checksum.substring(0, HASH_HEX_LENGTH), 16);
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public String getFullChecksum() {
+        return fullChecksum;
+    }
+}
\ No newline at end of file
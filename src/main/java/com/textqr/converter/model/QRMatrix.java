@@ -0,0 +1,46 @@
+package com.textqr.converter.model;
+
+/**
+ * Immutable 1-bit module grid of a single QR symbol.
+ * One bit per module, packed row-major into 64-bit words.
+ */
+public class QRMatrix {
+    private final int dimension;
+    private final int wordsPerRow;
+    private final long[] bits;
+
+    public QRMatrix(int dimension, long[] bits) {
+        int wordsPerRow = (dimension + 63) >>> 6;
+        if (bits.length != wordsPerRow * dimension) {
+            throw new IllegalArgumentException("Bit array does not match dimension " + dimension);
+        }
+        this.dimension = dimension;
+        this.wordsPerRow = wordsPerRow;
+        this.bits = bits;
+    }
+
+    public static long[] allocateBits(int dimension) {
+        return new long[((dimension + 63) >>> 6) * dimension];
+    }
+
+    public static void setBit(long[] bits, int dimension, int x, int y) {
+        int wordsPerRow = (dimension + 63) >>> 6;
+        bits[y * wordsPerRow + (x >>> 6)] |= 1L << (x & 63);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << (x & 63))) != 0;
+    }
+
+    public long[] getBits() {
+        return bits.clone();
+    }
+
+    public int getMemoryFootprint() {
+        return bits.length * Long.BYTES;
+    }
+}
\ No newline at end of file
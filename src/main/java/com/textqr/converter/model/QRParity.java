@@ -0,0 +1,163 @@
+package com.textqr.converter.model;
+
+import com.textqr.converter.util.ErasureCoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reed-Solomon parity symbol computed across the decoded bytes of a group of data
+ * chunks. Every k data chunks get m parity symbols, and a receiver holding any k of
+ * the k + m can rebuild the rest without scanning them again.
+ */
+public class QRParity {
+    private static final String PREFIX = "TQP:";
+    private static final int SHORT_ID_LENGTH = 8;
+    private static final int HEADER_FIELDS = 6;
+
+    private final String sessionId;
+    private final int dataShards;
+    private final int parityShards;
+    private final int index;
+    private final long payloadLength;
+    private final byte[] data;
+
+    public QRParity(String sessionId, int dataShards, int parityShards, int index, long payloadLength, byte[] data) {
+        this.sessionId = sessionId.length() > SHORT_ID_LENGTH ? sessionId.substring(0, SHORT_ID_LENGTH) : sessionId;
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+        this.index = index;
+        this.payloadLength = payloadLength;
+        this.data = data;
+    }
+
+    /**
+     * Computes m parity symbols for every group of k data chunks of the session.
+     */
+    public static List<QRParity> of(QRSession session, int dataShards, int parityShards) {
+        ErasureCoder coder = new ErasureCoder(dataShards, parityShards);
+        List<QRChunk> chunks = session.getChunks();
+
+        // Chunks are independently decodable Base64; only the last one may be shorter
+        byte[][] shards = new byte[chunks.size()][];
+        long payloadLength = 0;
+        for (QRChunk chunk : chunks) {
+            byte[] bytes = Base64.getDecoder().decode(chunk.getData());
+            shards[chunk.getSequenceNumber() - 1] = bytes;
+            payloadLength += bytes.length;
+        }
+        int shardLength = shards.length == 0 ? 0 : shards[0].length;
+
+        List<QRParity> parity = new ArrayList<>();
+        for (int first = 0; first < shards.length; first += dataShards) {
+            byte[][] group = new byte[Math.min(dataShards, shards.length - first)][];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = Arrays.copyOf(shards[first + i], shardLength);
+            }
+            for (byte[] parityShard : coder.encode(group)) {
+                parity.add(new QRParity(session.getSessionId(), dataShards, parityShards, parity.size(),
+                        payloadLength, parityShard));
+            }
+        }
+        return parity;
+    }
+
+    public static boolean isParityFrame(String frame) {
+        return frame.startsWith(PREFIX);
+    }
+
+    public String toFrameString() {
+        return String.format("%s%s:%d:%d:%d:%d:%s", PREFIX, sessionId, dataShards, parityShards, index,
+                payloadLength, Base64.getEncoder().encodeToString(data));
+    }
+
+    public static QRParity parse(String frame) {
+        if (!isParityFrame(frame)) {
+            throw new IllegalArgumentException("Not a parity frame");
+        }
+
+        String[] parts = frame.substring(PREFIX.length()).split(":", HEADER_FIELDS);
+        if (parts.length != HEADER_FIELDS) {
+            throw new IllegalArgumentException("Malformed parity frame header");
+        }
+        return new QRParity(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                Integer.parseInt(parts[3]), Long.parseLong(parts[4]), Base64.getDecoder().decode(parts[5]));
+    }
+
+    /**
+     * Fills in missing chunk payloads from the parity symbols of their groups. The list
+     * holds every data chunk's payload by sequence order, with null for the missing ones.
+     */
+    public static List<String> recover(List<String> chunks, Collection<QRParity> parity) {
+        List<String> recovered = new ArrayList<>(chunks);
+        if (!recovered.contains(null)) {
+            return recovered;
+        }
+        if (parity.isEmpty()) {
+            throw new IllegalArgumentException("Chunks are missing and no parity symbols were received");
+        }
+
+        QRParity first = parity.iterator().next();
+        int k = first.dataShards;
+        int m = first.parityShards;
+        int shardLength = first.data.length;
+        QRParity[] byIndex = new QRParity[(chunks.size() + k - 1) / k * m];
+        for (QRParity symbol : parity) {
+            if (!symbol.sessionId.equals(first.sessionId)) {
+                throw new IllegalArgumentException("Parity symbols belong to different sessions");
+            }
+            if (symbol.index < byIndex.length) {
+                byIndex[symbol.index] = symbol;
+            }
+        }
+
+        ErasureCoder coder = new ErasureCoder(k, m);
+        for (int group = 0; group * k < chunks.size(); group++) {
+            int start = group * k;
+            int size = Math.min(k, chunks.size() - start);
+            if (!recovered.subList(start, start + size).contains(null)) {
+                continue;
+            }
+
+            byte[][] shards = new byte[size + m][];
+            for (int i = 0; i < size; i++) {
+                String chunk = recovered.get(start + i);
+                shards[i] = chunk == null ? null : Arrays.copyOf(Base64.getDecoder().decode(chunk), shardLength);
+            }
+            for (int j = 0; j < m; j++) {
+                QRParity symbol = byIndex[group * m + j];
+                shards[size + j] = symbol == null ? null : symbol.data;
+            }
+            coder.reconstruct(shards, shardLength);
+
+            for (int i = 0; i < size; i++) {
+                if (recovered.get(start + i) == null) {
+                    // All chunks are full size except the last, which ends the payload
+                    long offset = (long) (start + i) * shardLength;
+                    int length = (int) Math.min(shardLength, first.payloadLength - offset);
+                    recovered.set(start + i, Base64.getEncoder().encodeToString(Arrays.copyOf(shards[i], length)));
+                }
+            }
+        }
+        return recovered;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public int getDataShards() {
+        return dataShards;
+    }
+
+    public int getParityShards() {
+        return parityShards;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
\ No newline at end of file
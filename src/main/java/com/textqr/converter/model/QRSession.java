@@ -1,5 +1,8 @@
 package com.textqr.converter.model;
 
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,21 +10,73 @@ import java.util.UUID;
 
 public class QRSession {
     private final String sessionId;
-    private final String originalText;
+    private final MappedFile source;
+    private volatile String originalText;
     private final List<QRChunk> chunks;
     private final LocalDateTime createdAt;
-    private final int totalSize;
+    private final long totalSize;
     private final String fullChecksum;
+    private final QRLayout layout;
+    private final PayloadCodec codec;
+    private volatile int structuredAppendParity = -1;
+    private long deltaBaseSize = -1;
+    private String deltaBaseChecksum;
 
     public QRSession(String originalText, String fullChecksum) {
+        this(originalText, fullChecksum, null);
+    }
+
+    public QRSession(String originalText, String fullChecksum, QRLayout layout) {
+        this(originalText, fullChecksum, layout, PayloadCodec.PLAIN);
+    }
+
+    public QRSession(String originalText, String fullChecksum, QRLayout layout, PayloadCodec codec) {
         this.sessionId = UUID.randomUUID().toString();
+        this.source = null;
         this.originalText = originalText;
         this.fullChecksum = fullChecksum;
+        this.layout = layout;
+        this.codec = codec;
         this.chunks = new ArrayList<>();
         this.createdAt = LocalDateTime.now();
         this.totalSize = originalText.getBytes().length;
     }
 
+    public QRSession(long totalSize, String fullChecksum, QRLayout layout, PayloadCodec codec) {
+        this.sessionId = UUID.randomUUID().toString();
+        this.source = null;
+        this.fullChecksum = fullChecksum;
+        this.layout = layout;
+        this.codec = codec;
+        this.chunks = new ArrayList<>();
+        this.createdAt = LocalDateTime.now();
+        this.totalSize = totalSize;
+    }
+
+    public QRSession(String sessionId, long totalSize, String fullChecksum, QRLayout layout, PayloadCodec codec,
+                     LocalDateTime createdAt) {
+        // Restores a persisted session under its original id
+        this.sessionId = sessionId;
+        this.source = null;
+        this.fullChecksum = fullChecksum;
+        this.layout = layout;
+        this.codec = codec;
+        this.chunks = new ArrayList<>();
+        this.createdAt = createdAt;
+        this.totalSize = totalSize;
+    }
+
+    public QRSession(MappedFile source, String fullChecksum, QRLayout layout, PayloadCodec codec) {
+        this.sessionId = UUID.randomUUID().toString();
+        this.source = source;
+        this.fullChecksum = fullChecksum;
+        this.layout = layout;
+        this.codec = codec;
+        this.chunks = new ArrayList<>();
+        this.createdAt = LocalDateTime.now();
+        this.totalSize = source.size();
+    }
+
     public void addChunk(QRChunk chunk) {
         chunks.add(chunk);
     }
@@ -30,8 +85,21 @@ public class QRSession {
         return sessionId;
     }
 
+    /**
+     * Returns the source text, or null for sessions created from a stream.
+     */
     public String getOriginalText() {
-        return originalText;
+        String text = originalText;
+        if (text == null && source != null) {
+            // File-backed sessions only decode their text when it is asked for
+            text = source.decode();
+            originalText = text;
+        }
+        return text;
+    }
+
+    public MappedFile getSource() {
+        return source;
     }
 
     public List<QRChunk> getChunks() {
@@ -42,7 +110,7 @@ public class QRSession {
         return createdAt;
     }
 
-    public int getTotalSize() {
+    public long getTotalSize() {
         return totalSize;
     }
 
@@ -50,7 +118,50 @@ public class QRSession {
         return fullChecksum;
     }
 
+    public QRLayout getLayout() {
+        return layout;
+    }
+
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    public int getStructuredAppendParity() {
+        int parity = structuredAppendParity;
+        if (parity < 0) {
+            // XOR of every payload byte across all symbols, as required by ISO 18004
+            parity = 0;
+            for (QRChunk chunk : chunks) {
+                String data = chunk.getData();
+                for (int i = 0; i < data.length(); i++) {
+                    parity ^= data.charAt(i) & 0xFF;
+                }
+            }
+            structuredAppendParity = parity;
+        }
+        return parity;
+    }
+
     public int getChunkCount() {
         return chunks.size();
     }
+
+    /**
+     * Records the base a delta session patches, so it can be described without reading it again.
+     */
+    public void setDeltaBase(long size, String checksum) {
+        this.deltaBaseSize = size;
+        this.deltaBaseChecksum = checksum;
+    }
+
+    /**
+     * Returns the size of the delta base, or -1 when the session is not a delta.
+     */
+    public long getDeltaBaseSize() {
+        return deltaBaseSize;
+    }
+
+    public String getDeltaBaseChecksum() {
+        return deltaBaseChecksum;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.textqr.converter.ui;
+
+import com.textqr.converter.core.QRGenerator;
+import com.textqr.converter.core.QRLayoutOptimizer;
+import com.textqr.converter.core.TextInputHandler;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs QR generation jobs on a dedicated worker thread.
+ * Restarting the service cancels the running job; results are published as one
+ * immutable value when a job succeeds, and progress updates are coalesced by the
+ * JavaFX Task machinery to at most one pending update per pulse.
+ */
+public class GenerationService extends Service<GenerationService.Result> {
+    
+    private final QRGenerator qrGenerator;
+    private final TextInputHandler textInputHandler;
+    private final ExecutorService executor;
+    
+    // Job parameters, only touched on the FX thread before restart()
+    private String text = "";
+    private MappedFile file;
+    private PayloadCodec codec = PayloadCodec.PLAIN;
+    private QRLayoutOptimizer.Policy policy = QRLayoutOptimizer.Policy.DEFAULT;
+    
+    public GenerationService(QRGenerator qrGenerator, TextInputHandler textInputHandler) {
+        this.qrGenerator = qrGenerator;
+        this.textInputHandler = textInputHandler;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qr-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setExecutor(executor);
+    }
+    
+    public void configure(String text, PayloadCodec codec, QRLayoutOptimizer.Policy policy) {
+        this.text = text;
+        this.file = null;
+        this.codec = codec;
+        this.policy = policy;
+    }
+    
+    public void configure(MappedFile file, PayloadCodec codec, QRLayoutOptimizer.Policy policy) {
+        this.text = null;
+        this.file = file;
+        this.codec = codec;
+        this.policy = policy;
+    }
+    
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+    
+    @Override
+    protected Task<Result> createTask() {
+        final String jobText = text;
+        final MappedFile jobFile = file;
+        final PayloadCodec jobCodec = codec;
+        final QRLayoutOptimizer.Policy jobPolicy = policy;
+        
+        return new Task<>() {
+            @Override
+            protected Result call() throws Exception {
+                updateMessage("Preparing payload...");
+                QRSession session;
+                if (jobFile != null) {
+                    // Files are encoded straight from the mapping, never through the UI text
+                    session = qrGenerator.createSession(jobFile, jobCodec, jobPolicy);
+                } else {
+                    String normalizedText = textInputHandler.validateAndNormalizeText(jobText);
+                    session = qrGenerator.createSession(normalizedText, jobCodec, jobPolicy);
+                }
+                
+                List<QRChunk> chunks = session.getChunks();
+                List<QRMatrix> matrices = new ArrayList<>(chunks.size());
+                for (int i = 0; i < chunks.size(); i++) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    matrices.add(qrGenerator.encodeMatrix(session, chunks.get(i)));
+                    updateProgress(i + 1, chunks.size());
+                    updateMessage(String.format("Generated %d of %d QR codes", i + 1, chunks.size()));
+                }
+                
+                return new Result(session, matrices);
+            }
+        };
+    }
+    
+    public static final class Result {
+        private final QRSession session;
+        private final List<QRMatrix> matrices;
+        
+        private Result(QRSession session, List<QRMatrix> matrices) {
+            this.session = session;
+            this.matrices = Collections.unmodifiableList(matrices);
+        }
+        
+        public QRSession getSession() {
+            return session;
+        }
+        
+        public List<QRMatrix> getMatrices() {
+            return matrices;
+        }
+    }
+}
\ No newline at end of file
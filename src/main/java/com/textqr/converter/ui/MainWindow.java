@@ -1,9 +1,14 @@
 package com.textqr.converter.ui;
 
 import com.textqr.converter.core.QRGenerator;
+import com.textqr.converter.core.QRLayoutOptimizer;
 import com.textqr.converter.core.TextInputHandler;
-import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
 import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.SequenceRanges;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -12,38 +17,62 @@ import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.embed.swing.SwingFXUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 public class MainWindow {
     private static final Logger logger = LoggerFactory.getLogger(MainWindow.class);
+    private static final Duration STATS_DEBOUNCE = Duration.millis(250);
+    
+    // Files above this size are previewed read-only instead of loaded into the TextArea
+    private static final long LARGE_FILE_THRESHOLD = 1024 * 1024;
+    private static final int PREVIEW_PAGE_LINES = 1000;
     
     private final QRGenerator qrGenerator;
     private final TextInputHandler textInputHandler;
     
     private TextArea inputTextArea;
+    private ListView<String> previewList;
+    private Label inputLabel;
+    private Label statsLabel;
+    private Button moreLinesButton;
     private Label statusLabel;
     private VBox qrDisplayArea;
     private CheckBox compressionCheckBox;
+    private CheckBox logCompactionCheckBox;
     private Button generateButton;
+    private Button cancelButton;
     private ProgressBar progressBar;
     
+    private final GenerationService generationService;
+    
+    // File-backed input for large files; null while the TextArea is the input
+    private MappedFile currentFile;
+    private BufferedReader previewReader;
+    // Small file shown in the TextArea; sent as saved, like a large one, until the text is edited
+    private MappedFile loadedFile;
+    
+    // Replaced as a whole on the FX thread when a job completes
     private QRSession currentSession;
-    private List<BufferedImage> currentQRImages;
+    private List<QRMatrix> currentQRMatrices;
     
     public MainWindow(QRGenerator qrGenerator, TextInputHandler textInputHandler) {
         this.qrGenerator = qrGenerator;
         this.textInputHandler = textInputHandler;
-        this.currentQRImages = new ArrayList<>();
+        this.currentQRMatrices = Collections.emptyList();
+        this.generationService = createGenerationService();
     }
     
     public void show(Stage primaryStage) {
@@ -81,6 +110,10 @@ public class MainWindow {
         scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
         
         primaryStage.setScene(scene);
+        primaryStage.setOnHidden(e -> {
+            generationService.shutdown();
+            useTextInput();
+        });
         primaryStage.show();
     }
     
@@ -91,13 +124,15 @@ public class MainWindow {
         Menu fileMenu = new Menu("File");
         MenuItem openItem = new MenuItem("Open File...");
         MenuItem saveItem = new MenuItem("Save QR Codes...");
+        MenuItem resendItem = new MenuItem("Re-send QR Codes...");
         MenuItem exitItem = new MenuItem("Exit");
         
         openItem.setOnAction(e -> openFile(stage));
         saveItem.setOnAction(e -> saveQRCodes(stage));
+        resendItem.setOnAction(e -> resendQRCodes(stage));
         exitItem.setOnAction(e -> Platform.exit());
         
-        fileMenu.getItems().addAll(openItem, saveItem, new SeparatorMenuItem(), exitItem);
+        fileMenu.getItems().addAll(openItem, saveItem, resendItem, new SeparatorMenuItem(), exitItem);
         
         // Edit menu
         Menu editMenu = new Menu("Edit");
@@ -125,7 +160,7 @@ public class MainWindow {
         VBox inputPane = new VBox(10);
         inputPane.setPadding(new Insets(10));
         
-        Label inputLabel = new Label("Input Text:");
+        inputLabel = new Label("Input Text:");
         inputLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
         
         inputTextArea = new TextArea();
@@ -133,6 +168,13 @@ public class MainWindow {
         inputTextArea.setWrapText(true);
         inputTextArea.setPrefRowCount(20);
         
+        // Virtualized read-only view of the first lines of a large file
+        previewList = new ListView<>();
+        previewList.getStyleClass().add("preview-list");
+        previewList.setVisible(false);
+        
+        StackPane inputStack = new StackPane(inputTextArea, previewList);
+        
         // Input options
         HBox optionsBox = new HBox(10);
         optionsBox.setAlignment(Pos.CENTER_LEFT);
@@ -140,15 +182,26 @@ public class MainWindow {
         compressionCheckBox = new CheckBox("Enable Compression");
         compressionCheckBox.setSelected(true);
         
-        Label statsLabel = new Label("0 characters");
-        inputTextArea.textProperty().addListener((obs, old, text) -> {
-            int chars = text.length();
-            int lines = text.split("\n").length;
-            statsLabel.setText(String.format("%d characters, %d lines", chars, lines));
+        logCompactionCheckBox = new CheckBox("Log-aware");
+        logCompactionCheckBox.disableProperty().bind(compressionCheckBox.selectedProperty().not());
+        
+        statsLabel = new Label("0 characters");
+        
+        // Recompute statistics once typing pauses rather than on every keystroke
+        PauseTransition statsDebounce = new PauseTransition(STATS_DEBOUNCE);
+        statsDebounce.setOnFinished(e -> {
+            if (currentFile != null) {
+                return;
+            }
+            TextInputHandler.InputStatistics stats = textInputHandler.analyzeInput(inputTextArea.getText());
+            statsLabel.setText(String.format("%d characters, %d lines, ~%d QR code(s)",
+                stats.getTotalCharacters(), stats.getTotalLines(), stats.getEstimatedQRCount()));
         });
+        inputTextArea.textProperty().addListener((obs, old, text) -> statsDebounce.playFromStart());
+        inputTextArea.textProperty().addListener((obs, old, text) -> releaseLoadedFile());
         
-        optionsBox.getChildren().addAll(compressionCheckBox, new Region(), statsLabel);
-        HBox.setHgrow(optionsBox.getChildren().get(1), Priority.ALWAYS);
+        optionsBox.getChildren().addAll(compressionCheckBox, logCompactionCheckBox, new Region(), statsLabel);
+        HBox.setHgrow(optionsBox.getChildren().get(2), Priority.ALWAYS);
         
         // Buttons
         HBox buttonBox = new HBox(10);
@@ -164,21 +217,31 @@ public class MainWindow {
         Button clearButton = new Button("Clear");
         clearButton.setOnAction(e -> clearInput());
         
-        buttonBox.getChildren().addAll(generateButton, loadFileButton, clearButton);
+        cancelButton = new Button("Cancel");
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> generationService.cancel());
+        
+        moreLinesButton = new Button("More Lines");
+        moreLinesButton.setVisible(false);
+        moreLinesButton.managedProperty().bind(moreLinesButton.visibleProperty());
+        moreLinesButton.setOnAction(e -> loadPreviewPage());
+        
+        buttonBox.getChildren().addAll(generateButton, cancelButton, loadFileButton, clearButton, moreLinesButton);
         
         progressBar = new ProgressBar(0);
+        progressBar.progressProperty().bind(generationService.progressProperty());
         progressBar.setPrefWidth(Double.MAX_VALUE);
         progressBar.setVisible(false);
         
         inputPane.getChildren().addAll(
             inputLabel, 
-            inputTextArea, 
+            inputStack, 
             optionsBox, 
             buttonBox,
             progressBar
         );
         
-        VBox.setVgrow(inputTextArea, Priority.ALWAYS);
+        VBox.setVgrow(inputStack, Priority.ALWAYS);
         
         return inputPane;
     }
@@ -196,67 +259,62 @@ public class MainWindow {
     }
     
     private void generateQRCodes() {
-        String text = inputTextArea.getText().trim();
-        if (text.isEmpty()) {
+        final PayloadCodec codec = compressionCheckBox.isSelected() && logCompactionCheckBox.isSelected()
+            ? PayloadCodec.LOG_GZIP
+            : PayloadCodec.of(compressionCheckBox.isSelected());
+        
+        if (currentFile == null && inputTextArea.getText().trim().isEmpty()) {
             showAlert(Alert.AlertType.WARNING, "No Input", "Please enter some text to convert to QR codes.");
             return;
         }
         
-        generateButton.setDisable(true);
-        progressBar.setVisible(true);
-        progressBar.setProgress(-1);
-        statusLabel.setText("Generating QR codes...");
+        // Files are sent byte for byte whatever their size; only typed or edited text is normalized
+        MappedFile source = currentFile != null ? currentFile : loadedFile;
+        if (source != null) {
+            generationService.configure(source, codec, QRLayoutOptimizer.Policy.DEFAULT);
+        } else {
+            generationService.configure(inputTextArea.getText().trim(), codec, QRLayoutOptimizer.Policy.DEFAULT);
+        }
         
-        final String finalText = text;
-        final boolean useCompression = compressionCheckBox.isSelected();
+        // restart() cancels a job that is still running
+        generationService.restart();
+    }
+    
+    private GenerationService createGenerationService() {
+        GenerationService service = new GenerationService(qrGenerator, textInputHandler);
         
-        CompletableFuture.runAsync(() -> {
-            try {
-                // Validate and normalize text
-                String normalizedText = textInputHandler.validateAndNormalizeText(finalText);
-                
-                // Create QR session
-                currentSession = qrGenerator.createSession(normalizedText, useCompression);
-                
-                // Generate QR images
-                currentQRImages.clear();
-                List<QRChunk> chunks = currentSession.getChunks();
-                
-                for (int i = 0; i < chunks.size(); i++) {
-                    QRChunk chunk = chunks.get(i);
-                    BufferedImage qrImage = qrGenerator.generateQRCode(chunk);
-                    currentQRImages.add(qrImage);
-                    
-                    final int progress = i + 1;
-                    Platform.runLater(() -> {
-                        progressBar.setProgress((double) progress / chunks.size());
-                        statusLabel.setText(String.format("Generated %d of %d QR codes", progress, chunks.size()));
-                    });
-                }
-                
-                Platform.runLater(() -> {
-                    displayQRCodes();
-                    progressBar.setVisible(false);
-                    generateButton.setDisable(false);
-                    statusLabel.setText(String.format("Generated %d QR code(s) successfully", currentQRImages.size()));
-                });
-                
-            } catch (Exception e) {
-                logger.error("Error generating QR codes", e);
-                Platform.runLater(() -> {
-                    showAlert(Alert.AlertType.ERROR, "Generation Error", "Failed to generate QR codes: " + e.getMessage());
-                    progressBar.setVisible(false);
-                    generateButton.setDisable(false);
-                    statusLabel.setText("Error: " + e.getMessage());
-                });
+        service.messageProperty().addListener((obs, old, message) -> {
+            if (service.isRunning() && message != null && !message.isEmpty()) {
+                statusLabel.setText(message);
             }
         });
+        service.runningProperty().addListener((obs, wasRunning, running) -> {
+            progressBar.setVisible(running);
+            cancelButton.setDisable(!running);
+        });
+        
+        service.setOnSucceeded(e -> {
+            GenerationService.Result result = service.getValue();
+            currentSession = result.getSession();
+            currentQRMatrices = result.getMatrices();
+            displayQRCodes();
+            statusLabel.setText(String.format("Generated %d QR code(s) successfully", currentQRMatrices.size()));
+        });
+        service.setOnCancelled(e -> statusLabel.setText("Generation cancelled"));
+        service.setOnFailed(e -> {
+            Throwable error = service.getException();
+            logger.error("Error generating QR codes", error);
+            showAlert(Alert.AlertType.ERROR, "Generation Error", "Failed to generate QR codes: " + error.getMessage());
+            statusLabel.setText("Error: " + error.getMessage());
+        });
+        
+        return service;
     }
     
     private void displayQRCodes() {
         qrDisplayArea.getChildren().clear();
         
-        if (currentQRImages.isEmpty()) {
+        if (currentQRMatrices.isEmpty()) {
             return;
         }
         
@@ -274,22 +332,24 @@ public class MainWindow {
         qrDisplayArea.getChildren().add(infoBox);
         
         // Display QR codes
-        for (int i = 0; i < currentQRImages.size(); i++) {
-            BufferedImage qrImage = currentQRImages.get(i);
+        for (int i = 0; i < currentQRMatrices.size(); i++) {
+            BufferedImage qrImage = qrGenerator.renderMatrix(currentQRMatrices.get(i));
             
             VBox qrBox = new VBox(5);
             qrBox.setAlignment(Pos.CENTER);
             qrBox.setPadding(new Insets(10));
             qrBox.setStyle("-fx-border-color: #cccccc; -fx-border-width: 1;");
             
+            // The FX image is a copy, so the render target goes straight back to the pool
             ImageView imageView = new ImageView();
             Image fxImage = SwingFXUtils.toFXImage(qrImage, null);
+            qrGenerator.releaseImage(qrImage);
             imageView.setImage(fxImage);
             imageView.setFitWidth(300);
             imageView.setFitHeight(300);
             imageView.setPreserveRatio(true);
             
-            Label label = new Label(String.format("QR Code %d of %d", i + 1, currentQRImages.size()));
+            Label label = new Label(String.format("QR Code %d of %d", i + 1, currentQRMatrices.size()));
             label.setStyle("-fx-font-weight: bold;");
             
             qrBox.getChildren().addAll(label, imageView);
@@ -308,8 +368,16 @@ public class MainWindow {
         File file = fileChooser.showOpenDialog(stage);
         if (file != null) {
             try {
-                String text = textInputHandler.readFromFile(file);
-                inputTextArea.setText(text);
+                if (file.length() > LARGE_FILE_THRESHOLD) {
+                    useFileInput(textInputHandler.mapFile(file.getAbsolutePath()));
+                } else {
+                    MappedFile mapped = textInputHandler.mapFile(file.getAbsolutePath());
+                    useTextInput();
+                    inputTextArea.setText(mapped.decode());
+                    // Set after the text so the edit listener does not release it right away
+                    loadedFile = mapped;
+                    inputLabel.setText("Input Text (" + file.getName() + ", sent as saved until edited):");
+                }
                 statusLabel.setText("Loaded file: " + file.getName());
             } catch (Exception e) {
                 showAlert(Alert.AlertType.ERROR, "File Error", "Failed to read file: " + e.getMessage());
@@ -317,8 +385,74 @@ public class MainWindow {
         }
     }
     
+    private void useFileInput(MappedFile file) {
+        useTextInput();
+        currentFile = file;
+        previewReader = new BufferedReader(file.openReader());
+        
+        inputLabel.setText("Input File (read-only preview): " + file.getPath().getFileName());
+        inputTextArea.setVisible(false);
+        previewList.setVisible(true);
+        moreLinesButton.setVisible(true);
+        
+        long payloadEstimate = (file.size() + 2) / 3 * 4;
+        statsLabel.setText(String.format("%,d bytes, ~%d QR code(s) uncompressed",
+            file.size(), QRLayoutOptimizer.estimateSymbolCount(payloadEstimate)));
+        loadPreviewPage();
+    }
+    
+    private void loadPreviewPage() {
+        try {
+            List<String> lines = textInputHandler.readLines(previewReader, PREVIEW_PAGE_LINES);
+            previewList.getItems().addAll(lines);
+            if (lines.size() < PREVIEW_PAGE_LINES) {
+                moreLinesButton.setVisible(false);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read preview lines", e);
+            moreLinesButton.setVisible(false);
+        }
+    }
+    
+    private void releaseLoadedFile() {
+        if (loadedFile == null) {
+            return;
+        }
+        
+        try {
+            loadedFile.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close input file", e);
+        }
+        loadedFile = null;
+        inputLabel.setText("Input Text:");
+    }
+    
+    private void useTextInput() {
+        releaseLoadedFile();
+        if (currentFile == null) {
+            return;
+        }
+        
+        try {
+            previewReader.close();
+            currentFile.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close input file", e);
+        }
+        currentFile = null;
+        previewReader = null;
+        
+        previewList.getItems().clear();
+        previewList.setVisible(false);
+        moreLinesButton.setVisible(false);
+        inputTextArea.setVisible(true);
+        inputLabel.setText("Input Text:");
+        statsLabel.setText("0 characters");
+    }
+    
     private void saveQRCodes(Stage stage) {
-        if (currentQRImages.isEmpty()) {
+        if (currentQRMatrices.isEmpty()) {
             showAlert(Alert.AlertType.WARNING, "No QR Codes", "Please generate QR codes first.");
             return;
         }
@@ -334,15 +468,21 @@ public class MainWindow {
                 outputDir.mkdirs();
                 
                 // Save individual QR codes
-                for (int i = 0; i < currentQRImages.size(); i++) {
+                for (int i = 0; i < currentQRMatrices.size(); i++) {
                     String filename = String.format("qr_%03d.png", i + 1);
                     File outputFile = new File(outputDir, filename);
-                    qrGenerator.saveQRCode(currentQRImages.get(i), outputFile);
+                    qrGenerator.saveQRCode(currentQRMatrices.get(i), outputFile);
+                }
+                
+                List<QRMatrix> manifest = qrGenerator.encodeManifest(currentSession);
+                for (int i = 0; i < manifest.size(); i++) {
+                    File outputFile = new File(outputDir, String.format("qr_manifest_%d.png", i + 1));
+                    qrGenerator.saveQRCode(manifest.get(i), outputFile);
                 }
                 
                 // Save composite if multiple codes
-                if (currentQRImages.size() > 1) {
-                    BufferedImage composite = qrGenerator.createCompositeImage(currentQRImages, 4);
+                if (currentQRMatrices.size() > 1) {
+                    BufferedImage composite = qrGenerator.composeMatrices(currentQRMatrices, 4);
                     File compositeFile = new File(outputDir, "qr_composite.png");
                     qrGenerator.saveQRCode(composite, compositeFile);
                 }
@@ -356,9 +496,53 @@ public class MainWindow {
         }
     }
     
+    private void resendQRCodes(Stage stage) {
+        if (currentQRMatrices.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "No QR Codes", "Please generate QR codes first.");
+            return;
+        }
+        
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Re-send QR Codes");
+        dialog.setHeaderText("Codes reported missing by the receiver");
+        dialog.setContentText("Sequence numbers (e.g. 37, 112-118):");
+        String spec = dialog.showAndWait().orElse(null);
+        if (spec == null) {
+            return;
+        }
+        
+        List<Integer> sequenceNumbers;
+        try {
+            sequenceNumbers = SequenceRanges.parse(spec, currentQRMatrices.size());
+        } catch (IllegalArgumentException e) {
+            showAlert(Alert.AlertType.WARNING, "Invalid Range", e.getMessage());
+            return;
+        }
+        
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Save Re-sent QR Codes");
+        File outputDir = directoryChooser.showDialog(stage);
+        if (outputDir == null) {
+            return;
+        }
+        
+        try {
+            // Only the cached matrices of the listed codes are rendered
+            for (int sequence : sequenceNumbers) {
+                qrGenerator.saveQRCode(currentQRMatrices.get(sequence - 1),
+                    new File(outputDir, String.format("qr_%03d.png", sequence)));
+            }
+            statusLabel.setText("Re-sent QR codes " + SequenceRanges.format(sequenceNumbers) + " to: "
+                + outputDir.getAbsolutePath());
+        } catch (Exception e) {
+            showAlert(Alert.AlertType.ERROR, "Save Error", "Failed to save QR codes: " + e.getMessage());
+        }
+    }
+    
     private void copyFromClipboard() {
         try {
             String text = textInputHandler.readFromClipboard();
+            useTextInput();
             inputTextArea.setText(text);
             statusLabel.setText("Text loaded from clipboard");
         } catch (Exception e) {
@@ -367,6 +551,11 @@ public class MainWindow {
     }
     
     private void pasteToClipboard() {
+        if (currentFile != null) {
+            statusLabel.setText("Large file input cannot be copied to the clipboard");
+            return;
+        }
+        
         String text = inputTextArea.getText();
         if (!text.isEmpty()) {
             textInputHandler.copyToClipboard(text);
@@ -375,9 +564,11 @@ public class MainWindow {
     }
     
     private void clearInput() {
+        generationService.cancel();
+        useTextInput();
         inputTextArea.clear();
         qrDisplayArea.getChildren().clear();
-        currentQRImages.clear();
+        currentQRMatrices = Collections.emptyList();
         currentSession = null;
         statusLabel.setText("Ready");
     }
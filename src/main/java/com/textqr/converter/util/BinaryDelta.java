@@ -0,0 +1,208 @@
+package com.textqr.converter.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rsync-style binary delta. The base is split into fixed blocks indexed by a rolling
+ * weak checksum and a truncated MD5; the target is scanned one byte at a time and
+ * every window that matches a base block becomes a block copy, everything else a literal.
+ * Both ends are identified by SHA-256 so a patch is only ever applied to the right base.
+ */
+public class BinaryDelta {
+    private static final int MAGIC = 0x54514431; // "TQD1"
+    private static final int HASH_LENGTH = 32;
+    private static final int MIN_BLOCK_SIZE = 256;
+    private static final int MAX_BLOCK_SIZE = 16 * 1024;
+    
+    private static final byte OP_COPY = 0;
+    private static final byte OP_LITERAL = 1;
+    
+    public static byte[] compute(byte[] base, byte[] target) {
+        // rsync's heuristic: block size around the square root of the base length
+        int blockSize = Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, (int) Math.sqrt(base.length)));
+        return compute(base, target, blockSize);
+    }
+    
+    static byte[] compute(byte[] base, byte[] target, int blockSize) {
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        int blockCount = base.length / blockSize;
+        long[] strong = new long[blockCount];
+        Map<Integer, List<Integer>> blocksByWeak = new HashMap<>();
+        for (int block = 0; block < blockCount; block++) {
+            int offset = block * blockSize;
+            strong[block] = strongHash(md5, base, offset, blockSize);
+            blocksByWeak.computeIfAbsent(weakHash(base, offset, blockSize), k -> new ArrayList<>(1)).add(block);
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(target.length / 8 + 128);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(MAGIC).array());
+        out.writeBytes(DigestUtils.sha256(base));
+        out.writeBytes(DigestUtils.sha256(target));
+        LogCompactor.writeVarint(out, blockSize);
+        LogCompactor.writeVarint(out, target.length);
+        
+        Ops ops = new Ops(out, target);
+        int position = 0;
+        int literalStart = 0;
+        int a = 0;
+        int b = 0;
+        boolean haveWindow = false;
+        
+        while (position + blockSize <= target.length && blockCount > 0) {
+            if (!haveWindow) {
+                int weak = weakHash(target, position, blockSize);
+                a = weak & 0xFFFF;
+                b = weak >>> 16;
+                haveWindow = true;
+            }
+            
+            int match = findBlock(blocksByWeak.get(a | (b << 16)), strong, md5, target, position, blockSize);
+            if (match >= 0) {
+                ops.literal(literalStart, position);
+                ops.copy(match);
+                position += blockSize;
+                literalStart = position;
+                haveWindow = false;
+                continue;
+            }
+            
+            // Roll the window one byte forward
+            if (position + blockSize < target.length) {
+                int out0 = target[position] & 0xFF;
+                int in0 = target[position + blockSize] & 0xFF;
+                a = (a - out0 + in0) & 0xFFFF;
+                b = (b - blockSize * out0 + a) & 0xFFFF;
+            }
+            position++;
+        }
+        ops.literal(literalStart, target.length);
+        ops.flush();
+        return out.toByteArray();
+    }
+    
+    public static boolean isDelta(byte[] data) {
+        return data.length >= 4 && ByteBuffer.wrap(data).getInt() == MAGIC;
+    }
+    
+    public static byte[] apply(byte[] base, byte[] delta) {
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        if (delta.length < 4 + 2 * HASH_LENGTH || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a delta stream");
+        }
+        
+        byte[] baseHash = new byte[HASH_LENGTH];
+        byte[] targetHash = new byte[HASH_LENGTH];
+        in.get(baseHash);
+        in.get(targetHash);
+        if (!Arrays.equals(baseHash, DigestUtils.sha256(base))) {
+            throw new IllegalArgumentException("Delta was computed against a different base");
+        }
+        
+        int blockSize = (int) LogCompactor.readVarint(in);
+        byte[] target = new byte[(int) LogCompactor.readVarint(in)];
+        int position = 0;
+        while (in.hasRemaining()) {
+            byte op = in.get();
+            if (op == OP_COPY) {
+                int offset = (int) LogCompactor.readVarint(in) * blockSize;
+                int length = (int) LogCompactor.readVarint(in) * blockSize;
+                System.arraycopy(base, offset, target, position, length);
+                position += length;
+            } else if (op == OP_LITERAL) {
+                int length = (int) LogCompactor.readVarint(in);
+                in.get(target, position, length);
+                position += length;
+            } else {
+                throw new IllegalArgumentException("Unknown delta op: " + op);
+            }
+        }
+        
+        if (position != target.length || !Arrays.equals(targetHash, DigestUtils.sha256(target))) {
+            throw new IllegalArgumentException("Patched output does not match the target checksum");
+        }
+        return target;
+    }
+    
+    private static int findBlock(List<Integer> candidates, long[] strong, MessageDigest md5,
+                                 byte[] data, int offset, int length) {
+        if (candidates == null) {
+            return -1;
+        }
+        long hash = strongHash(md5, data, offset, length);
+        for (int block : candidates) {
+            if (strong[block] == hash) {
+                return block;
+            }
+        }
+        return -1;
+    }
+    
+    private static int weakHash(byte[] data, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int value = data[offset + i] & 0xFF;
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & 0xFFFF) | ((b & 0xFFFF) << 16);
+    }
+    
+    private static long strongHash(MessageDigest md5, byte[] data, int offset, int length) {
+        md5.update(data, offset, length);
+        return ByteBuffer.wrap(md5.digest()).getLong();
+    }
+    
+    /**
+     * Op writer that merges runs of consecutive block copies into one op.
+     */
+    private static final class Ops {
+        private final ByteArrayOutputStream out;
+        private final byte[] target;
+        private int copyStart = -1;
+        private int copyCount;
+        
+        Ops(ByteArrayOutputStream out, byte[] target) {
+            this.out = out;
+            this.target = target;
+        }
+        
+        void copy(int block) {
+            if (copyStart >= 0 && copyStart + copyCount == block) {
+                copyCount++;
+                return;
+            }
+            flush();
+            copyStart = block;
+            copyCount = 1;
+        }
+        
+        void literal(int from, int to) {
+            if (to <= from) {
+                return;
+            }
+            flush();
+            out.write(OP_LITERAL);
+            LogCompactor.writeVarint(out, to - from);
+            out.write(target, from, to - from);
+        }
+        
+        void flush() {
+            if (copyStart >= 0) {
+                out.write(OP_COPY);
+                LogCompactor.writeVarint(out, copyStart);
+                LogCompactor.writeVarint(out, copyCount);
+                copyStart = -1;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.textqr.converter.util;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 public class ChecksumUtil {
     
@@ -9,6 +13,19 @@ public class ChecksumUtil {
         return DigestUtils.sha256Hex(data.getBytes(StandardCharsets.UTF_8));
     }
     
+    public static String calculateSHA256(byte[] data) {
+        return DigestUtils.sha256Hex(data);
+    }
+    
+    public static String calculateSHA256(MappedFile file) {
+        // Digest straight from the mapped windows, without a heap copy of the file
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        for (ByteBuffer buffer : file.buffers()) {
+            digest.update(buffer);
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+    
     public static String calculateMD5(String data) {
         return DigestUtils.md5Hex(data.getBytes(StandardCharsets.UTF_8));
     }
@@ -3,10 +3,33 @@ package com.textqr.converter.util;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 public class CompressionUtil {
+    // Inputs at least this large are split into independently compressed gzip members
+    public static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    
+    // Member header: magic, CM, FLG=FEXTRA, MTIME, XFL, OS=unknown, XLEN, then a "TQ" subfield with the member size
+    private static final int HEADER_SIZE = 20;
+    private static final int TRAILER_SIZE = 8;
+    private static final byte FEXTRA = 0x04;
+    private static final byte SUBFIELD_ID1 = 'T';
+    private static final byte SUBFIELD_ID2 = 'Q';
+    
+    // One raw deflater per worker thread, reset between blocks
+    private static final ThreadLocal<Deflater> DEFLATER =
+        ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
     
     public static byte[] compress(byte[] data) {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -21,6 +44,23 @@ public class CompressionUtil {
         }
     }
     
+    public static byte[] compress(InputStream in) {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             GZIPOutputStream gzipOut = new GZIPOutputStream(baos, 64 * 1024)) {
+            
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                gzipOut.write(buffer, 0, len);
+            }
+            gzipOut.finish();
+            return baos.toByteArray();
+            
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress data", e);
+        }
+    }
+    
     public static byte[] decompress(byte[] compressedData) {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(compressedData);
              GZIPInputStream gzipIn = new GZIPInputStream(bais);
@@ -39,6 +79,191 @@ public class CompressionUtil {
         }
     }
     
+    public static byte[] compressParallel(byte[] data) {
+        return compressParallel(data, DEFAULT_BLOCK_SIZE);
+    }
+    
+    static byte[] compressParallel(byte[] data, int blockSize) {
+        List<ByteBuffer> blocks = new ArrayList<>();
+        for (int offset = 0; offset < data.length; offset += blockSize) {
+            blocks.add(ByteBuffer.wrap(data, offset, Math.min(blockSize, data.length - offset)));
+        }
+        return compressBlocks(blocks);
+    }
+    
+    public static byte[] compressParallel(MappedFile file) {
+        // Blocks are slices of the mapping windows, so nothing is copied before deflating
+        List<ByteBuffer> blocks = new ArrayList<>();
+        for (ByteBuffer window : file.buffers()) {
+            while (window.hasRemaining()) {
+                int length = Math.min(DEFAULT_BLOCK_SIZE, window.remaining());
+                ByteBuffer block = window.slice();
+                block.limit(length);
+                blocks.add(block);
+                window.position(window.position() + length);
+            }
+        }
+        return compressBlocks(blocks);
+    }
+    
+    /**
+     * Compresses each block on the common pool into its own gzip member and concatenates
+     * them in order. The result is a valid multi-member gzip stream; every member also
+     * records its compressed size in an FEXTRA subfield so it can be located without inflating.
+     */
+    private static byte[] compressBlocks(List<ByteBuffer> blocks) {
+        if (blocks.isEmpty()) {
+            blocks.add(ByteBuffer.allocate(0));
+        }
+        
+        byte[][] members = IntStream.range(0, blocks.size())
+            .parallel()
+            .mapToObj(i -> compressMember(blocks.get(i)))
+            .toArray(byte[][]::new);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(totalLength(members));
+        for (byte[] member : members) {
+            out.write(member, 0, member.length);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] compressMember(ByteBuffer block) {
+        int inputLength = block.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(block.duplicate());
+        
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(block);
+        deflater.finish();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(inputLength / 2 + HEADER_SIZE + TRAILER_SIZE);
+        out.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+        }
+        deflater.reset();
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, inputLength);
+        
+        byte[] member = out.toByteArray();
+        member[0] = 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = Deflater.DEFLATED;
+        member[3] = FEXTRA;
+        member[9] = (byte) 0xff;
+        member[10] = 8;
+        member[12] = SUBFIELD_ID1;
+        member[13] = SUBFIELD_ID2;
+        member[14] = 4;
+        putIntLE(member, 16, member.length);
+        return member;
+    }
+    
+    /**
+     * Inflates the members of a stream written by compressParallel concurrently into one
+     * preallocated buffer. Streams without the member size subfield are decompressed sequentially.
+     */
+    public static byte[] decompressParallel(byte[] compressedData) {
+        List<int[]> members = new ArrayList<>();
+        long totalSize = 0;
+        int offset = 0;
+        while (offset < compressedData.length) {
+            int memberLength = memberLength(compressedData, offset);
+            if (memberLength < HEADER_SIZE + TRAILER_SIZE || offset + memberLength > compressedData.length) {
+                return decompress(compressedData);
+            }
+            
+            int size = getIntLE(compressedData, offset + memberLength - 4);
+            members.add(new int[]{offset, memberLength, (int) totalSize, size});
+            totalSize += size & 0xFFFFFFFFL;
+            offset += memberLength;
+        }
+        if (members.isEmpty() || totalSize > Integer.MAX_VALUE - 8) {
+            return decompress(compressedData);
+        }
+        
+        byte[] output = new byte[(int) totalSize];
+        members.parallelStream().forEach(member -> inflateMember(compressedData, member, output));
+        return output;
+    }
+    
+    private static int memberLength(byte[] data, int offset) {
+        if (data.length - offset < HEADER_SIZE
+                || data[offset] != 0x1f || data[offset + 1] != (byte) 0x8b
+                || data[offset + 3] != FEXTRA || data[offset + 10] != 8 || data[offset + 11] != 0
+                || data[offset + 12] != SUBFIELD_ID1 || data[offset + 13] != SUBFIELD_ID2) {
+            return -1;
+        }
+        return getIntLE(data, offset + 16);
+    }
+    
+    private static void inflateMember(byte[] data, int[] member, byte[] output) {
+        int bodyStart = member[0] + HEADER_SIZE;
+        int bodyLength = member[1] - HEADER_SIZE - TRAILER_SIZE;
+        int outputOffset = member[2];
+        int size = member[3];
+        
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, bodyStart, bodyLength);
+            int written = 0;
+            while (written < size && !inflater.finished()) {
+                int length = inflater.inflate(output, outputOffset + written, size - written);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                written += length;
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(output, outputOffset, written);
+            int expectedCrc = getIntLE(data, member[0] + member[1] - TRAILER_SIZE);
+            if (written != size || (int) crc.getValue() != expectedCrc) {
+                throw new RuntimeException("Failed to decompress data: corrupt member at offset " + member[0]);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Failed to decompress data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private static int totalLength(byte[][] members) {
+        long total = 0;
+        for (byte[] member : members) {
+            total += member.length;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException("Failed to compress data: output exceeds 2 GB");
+        }
+        return (int) total;
+    }
+    
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+    
+    private static void putIntLE(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >>> 8);
+        data[offset + 2] = (byte) (value >>> 16);
+        data[offset + 3] = (byte) (value >>> 24);
+    }
+    
+    private static int getIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xFF)
+            | (data[offset + 1] & 0xFF) << 8
+            | (data[offset + 2] & 0xFF) << 16
+            | (data[offset + 3] & 0xFF) << 24;
+    }
+    
     public static double getCompressionRatio(byte[] original, byte[] compressed) {
         return (double) compressed.length / original.length;
     }
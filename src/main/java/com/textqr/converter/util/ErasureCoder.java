@@ -0,0 +1,218 @@
+package com.textqr.converter.util;
+
+import com.google.zxing.common.reedsolomon.GenericGF;
+import com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reed-Solomon erasure code over GF(256) across equally sized shards: every byte
+ * column of k data shards is one codeword, and m parity shards hold its check symbols.
+ * Any m lost shards of a group can be rebuilt from the others.
+ * <p>
+ * Parity comes from ZXing's {@link ReedSolomonEncoder} on the QR code field, so it is
+ * the same code QR symbols use internally. ZXing's decoder is not used for recovery:
+ * it has to locate errors first and therefore repairs only m/2 of them, while a lost
+ * chunk is an erasure at a known position, which allows all m to be solved directly.
+ */
+public class ErasureCoder {
+    // Data and parity shards together, one field element each
+    public static final int MAX_SHARDS = 255;
+    
+    private static final GenericGF FIELD = GenericGF.QR_CODE_FIELD_256;
+    private static final int PRIMITIVE = 0x011D;
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+    
+    static {
+        // Same tables as GenericGF.QR_CODE_FIELD_256, whose arithmetic is not public
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= PRIMITIVE;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+    }
+    
+    private final int dataShards;
+    private final int parityShards;
+    
+    public ErasureCoder(int dataShards, int parityShards) {
+        if (dataShards < 1 || parityShards < 1 || dataShards + parityShards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Need 1 or more data and parity shards, at most 255 in total: "
+                + dataShards + "+" + parityShards);
+        }
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+    }
+    
+    public int getDataShards() {
+        return dataShards;
+    }
+    
+    public int getParityShards() {
+        return parityShards;
+    }
+    
+    /**
+     * Computes the parity shards for a group of up to k data shards of equal length.
+     */
+    public byte[][] encode(byte[][] data) {
+        checkGroupSize(data.length);
+        int length = data.length == 0 ? 0 : data[0].length;
+        int[][] coefficients = parityCoefficients(data.length);
+        
+        byte[][] parity = new byte[parityShards][length];
+        for (int i = 0; i < data.length; i++) {
+            if (data[i].length != length) {
+                throw new IllegalArgumentException("Shards must all be " + length + " bytes");
+            }
+            for (int j = 0; j < parityShards; j++) {
+                multiplyAdd(coefficients[i][j], data[i], parity[j]);
+            }
+        }
+        return parity;
+    }
+    
+    /**
+     * Rebuilds missing shards in place. The array holds the group's data shards followed
+     * by its parity shards, with null for every shard that was not received.
+     */
+    public void reconstruct(byte[][] shards, int shardLength) {
+        int groupSize = shards.length - parityShards;
+        checkGroupSize(groupSize);
+        
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] == null) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        if (missing.size() > parityShards) {
+            throw new IllegalArgumentException("Cannot rebuild " + missing.size() + " missing shards with "
+                + parityShards + " parity shards");
+        }
+        
+        // Every codeword vanishes at the generator roots a^(base+i). Written out for the first
+        // e roots this is an e x e Vandermonde system in the unknown shards, solved once per group.
+        int erased = missing.size();
+        int base = FIELD.getGeneratorBase();
+        int[][] weights = new int[erased][shards.length];
+        for (int i = 0; i < erased; i++) {
+            for (int p = 0; p < shards.length; p++) {
+                int degree = shards.length - 1 - p;
+                weights[i][p] = EXP[((base + i) * degree) % 255];
+            }
+        }
+        int[][] system = new int[erased][erased];
+        for (int i = 0; i < erased; i++) {
+            for (int j = 0; j < erased; j++) {
+                system[i][j] = weights[i][missing.get(j)];
+            }
+        }
+        int[][] inverse = invert(system);
+        
+        byte[][] syndromes = new byte[erased][shardLength];
+        for (int p = 0; p < shards.length; p++) {
+            if (shards[p] == null) {
+                continue;
+            }
+            for (int i = 0; i < erased; i++) {
+                multiplyAdd(weights[i][p], shards[p], syndromes[i]);
+            }
+        }
+        for (int j = 0; j < erased; j++) {
+            byte[] rebuilt = new byte[shardLength];
+            for (int i = 0; i < erased; i++) {
+                multiplyAdd(inverse[j][i], syndromes[i], rebuilt);
+            }
+            shards[missing.get(j)] = rebuilt;
+        }
+    }
+    
+    private void checkGroupSize(int groupSize) {
+        if (groupSize < 1 || groupSize > dataShards) {
+            throw new IllegalArgumentException("Group must hold 1 to " + dataShards + " data shards: " + groupSize);
+        }
+    }
+    
+    private int[][] parityCoefficients(int groupSize) {
+        // The code is linear, so encoding each unit vector once gives the parity weight of every data shard
+        ReedSolomonEncoder encoder = new ReedSolomonEncoder(FIELD);
+        int[][] coefficients = new int[groupSize][];
+        for (int i = 0; i < groupSize; i++) {
+            int[] codeword = new int[groupSize + parityShards];
+            codeword[i] = 1;
+            encoder.encode(codeword, parityShards);
+            coefficients[i] = new int[parityShards];
+            System.arraycopy(codeword, groupSize, coefficients[i], 0, parityShards);
+        }
+        return coefficients;
+    }
+    
+    private static void multiplyAdd(int factor, byte[] source, byte[] target) {
+        if (factor == 0) {
+            return;
+        }
+        int logFactor = LOG[factor];
+        for (int i = 0; i < target.length; i++) {
+            int value = source[i] & 0xFF;
+            if (value != 0) {
+                target[i] ^= EXP[LOG[value] + logFactor];
+            }
+        }
+    }
+    
+    private static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+    
+    private static int[][] invert(int[][] matrix) {
+        int size = matrix.length;
+        int[][] work = new int[size][size * 2];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(matrix[i], 0, work[i], 0, size);
+            work[i][size + i] = 1;
+        }
+        
+        // Gauss-Jordan elimination; addition and subtraction are both XOR
+        for (int column = 0; column < size; column++) {
+            int pivot = column;
+            while (work[pivot][column] == 0) {
+                pivot++;
+            }
+            int[] swap = work[pivot];
+            work[pivot] = work[column];
+            work[column] = swap;
+            
+            int scale = EXP[255 - LOG[work[column][column]]];
+            for (int k = 0; k < size * 2; k++) {
+                work[column][k] = multiply(work[column][k], scale);
+            }
+            for (int row = 0; row < size; row++) {
+                int factor = work[row][column];
+                if (row != column && factor != 0) {
+                    for (int k = 0; k < size * 2; k++) {
+                        work[row][k] ^= multiply(factor, work[column][k]);
+                    }
+                }
+            }
+        }
+        
+        int[][] inverse = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(work[i], size, inverse[i], 0, size);
+        }
+        return inverse;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.textqr.converter.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * Computes the SHA-256 and byte count of everything read through it, so streamed
+ * input is hashed in the same pass that compresses it.
+ */
+public class HashingInputStream extends FilterInputStream {
+    private final MessageDigest digest = DigestUtils.getSha256Digest();
+    private long byteCount;
+    
+    public HashingInputStream(InputStream in) {
+        super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            digest.update((byte) b);
+            byteCount++;
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            digest.update(b, off, read);
+            byteCount += read;
+        }
+        return read;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would be missing from the digest, so read them instead
+        byte[] buffer = new byte[8192];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+    
+    public long getByteCount() {
+        return byteCount;
+    }
+    
+    public String getSHA256Hex() {
+        return Hex.encodeHexString(digest.digest());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,439 @@
+package com.textqr.converter.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reversible, log-aware transform applied before compression.
+ * Lines are split into a constant template and variable tokens (tokens holding
+ * digits, as in Drain's preprocessing), leading timestamps are delta-encoded,
+ * repeated stack-trace blocks become back-references, and each kind of data is
+ * written to its own column so the downstream codec sees homogeneous streams.
+ * {@link #expand(byte[])} restores the original text exactly. Raw bytes that need
+ * not be valid UTF-8 are compacted with {@link #compact(byte[])}, one char per byte,
+ * and come back unchanged from {@link #expandBytes(byte[])}.
+ */
+public class LogCompactor {
+    private static final int MAGIC = 0x54514C31; // "TQL1"
+    private static final int MAGIC_BYTES = 0x54514231; // "TQB1"
+    
+    private static final char PLACEHOLDER = '\u0001';
+    private static final int MIN_BLOCK_LINES = 2;
+    
+    private static final byte OP_TEMPLATE = 0;
+    private static final byte OP_LITERAL = 1;
+    private static final byte OP_BLOCK_START = 2;
+    private static final byte OP_BLOCK_REF = 3;
+    
+    // Fixed-width timestamp layouts: date/time separator and fraction separator (0 = no fraction)
+    private static final char[][] TIMESTAMP_FORMATS = {
+        {' ', '.'}, {'T', '.'}, {' ', ','}, {'T', ','}, {' ', 0}, {'T', 0}
+    };
+    
+    public static byte[] compact(String text) {
+        return compact(text, MAGIC);
+    }
+    
+    public static byte[] compact(byte[] data) {
+        // ISO-8859-1 maps every byte to the char of the same value and back
+        return compact(new String(data, StandardCharsets.ISO_8859_1), MAGIC_BYTES);
+    }
+    
+    private static byte[] compact(String text, int magic) {
+        Columns columns = new Columns();
+        List<String> lines = splitLines(text);
+        Map<String, Integer> templateIds = new HashMap<>();
+        Map<String, Integer> blockIds = new HashMap<>();
+        long[] previousTimestamp = {0L};
+        
+        int index = 0;
+        while (index < lines.size()) {
+            int blockEnd = stackBlockEnd(lines, index);
+            if (blockEnd - index >= MIN_BLOCK_LINES) {
+                String block = String.join("\n", lines.subList(index, blockEnd));
+                Integer blockId = blockIds.get(block);
+                if (blockId != null) {
+                    columns.ops.write(OP_BLOCK_REF);
+                    writeVarint(columns.blockRefs, blockId);
+                    index = blockEnd;
+                    continue;
+                }
+                blockIds.put(block, blockIds.size());
+                columns.ops.write(OP_BLOCK_START);
+                writeVarint(columns.blockRefs, blockEnd - index);
+            } else {
+                blockEnd = index + 1;
+            }
+            
+            for (int i = index; i < blockEnd; i++) {
+                writeLine(lines.get(i), columns, templateIds, previousTimestamp);
+            }
+            index = blockEnd;
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, magic);
+        writeVarint(out, lines.size());
+        for (ByteArrayOutputStream column : columns.all()) {
+            writeVarint(out, column.size());
+            out.writeBytes(column.toByteArray());
+        }
+        return out.toByteArray();
+    }
+    
+    public static String expand(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int magic = in.getInt();
+        String lines = expandLines(in, magic);
+        if (magic == MAGIC) {
+            return lines;
+        }
+        return new String(lines.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+    
+    public static byte[] expandBytes(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int magic = in.getInt();
+        String lines = expandLines(in, magic);
+        return lines.getBytes(magic == MAGIC ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+    
+    private static String expandLines(ByteBuffer in, int magic) {
+        if (magic != MAGIC && magic != MAGIC_BYTES) {
+            throw new IllegalArgumentException("Not a compacted log stream");
+        }
+        int lineCount = (int) readVarint(in);
+        
+        ByteBuffer[] columns = new ByteBuffer[Columns.COUNT];
+        for (int i = 0; i < columns.length; i++) {
+            int length = (int) readVarint(in);
+            columns[i] = in.slice();
+            columns[i].limit(length);
+            in.position(in.position() + length);
+        }
+        ByteBuffer templates = columns[0];
+        ByteBuffer ops = columns[1];
+        ByteBuffer templateRefs = columns[2];
+        ByteBuffer timestamps = columns[3];
+        ByteBuffer variables = columns[4];
+        ByteBuffer literals = columns[5];
+        ByteBuffer blockRefs = columns[6];
+        
+        List<String> templateTable = new ArrayList<>();
+        List<List<String>> blocks = new ArrayList<>();
+        List<String> lines = new ArrayList<>(lineCount);
+        long[] previousTimestamp = {0L};
+        
+        while (lines.size() < lineCount) {
+            byte op = ops.get();
+            if (op == OP_BLOCK_REF) {
+                lines.addAll(blocks.get((int) readVarint(blockRefs)));
+                continue;
+            }
+            
+            boolean isBlock = op == OP_BLOCK_START;
+            int count = isBlock ? (int) readVarint(blockRefs) : 1;
+            
+            List<String> block = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte lineOp = isBlock ? ops.get() : op;
+                block.add(readLine(lineOp, templates, templateRefs, timestamps, variables, literals,
+                    templateTable, previousTimestamp));
+            }
+            if (isBlock) {
+                blocks.add(block);
+            }
+            lines.addAll(block);
+        }
+        
+        return String.join("\n", lines);
+    }
+    
+    private static void writeLine(String line, Columns columns, Map<String, Integer> templateIds,
+                                  long[] previousTimestamp) {
+        if (line.indexOf(PLACEHOLDER) >= 0) {
+            columns.ops.write(OP_LITERAL);
+            writeChars(columns.literals, line);
+            return;
+        }
+        
+        columns.ops.write(OP_TEMPLATE);
+        
+        // Leading timestamp: format id (0 = none) and delta to the previous timestamp
+        int format = timestampFormat(line);
+        String body = line;
+        writeVarint(columns.timestamps, format);
+        if (format > 0) {
+            int length = timestampLength(format);
+            long millis = parseTimestamp(line, format);
+            writeVarint(columns.timestamps, zigZag(millis - previousTimestamp[0]));
+            previousTimestamp[0] = millis;
+            body = line.substring(length);
+        }
+        
+        String[] tokens = body.split(" ", -1);
+        StringBuilder template = new StringBuilder(body.length());
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                template.append(' ');
+            }
+            if (isVariable(tokens[i])) {
+                template.append(PLACEHOLDER);
+                writeChars(columns.variables, tokens[i]);
+            } else {
+                template.append(tokens[i]);
+            }
+        }
+        
+        String key = template.toString();
+        Integer templateId = templateIds.get(key);
+        if (templateId == null) {
+            templateId = templateIds.size();
+            templateIds.put(key, templateId);
+            writeChars(columns.templates, key);
+        }
+        writeVarint(columns.templateRefs, templateId);
+    }
+    
+    private static String readLine(byte op, ByteBuffer templates, ByteBuffer templateRefs, ByteBuffer timestamps,
+                                   ByteBuffer variables, ByteBuffer literals, List<String> templateTable,
+                                   long[] previousTimestamp) {
+        if (op == OP_LITERAL) {
+            return readChars(literals);
+        }
+        
+        StringBuilder line = new StringBuilder();
+        int format = (int) readVarint(timestamps);
+        if (format > 0) {
+            long millis = previousTimestamp[0] + unZigZag(readVarint(timestamps));
+            previousTimestamp[0] = millis;
+            formatTimestamp(millis, format, line);
+        }
+        
+        int templateId = (int) readVarint(templateRefs);
+        while (templateTable.size() <= templateId) {
+            templateTable.add(readChars(templates));
+        }
+        
+        String template = templateTable.get(templateId);
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == PLACEHOLDER) {
+                line.append(readChars(variables));
+            } else {
+                line.append(c);
+            }
+        }
+        return line.toString();
+    }
+    
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int newline;
+        while ((newline = text.indexOf('\n', start)) >= 0) {
+            lines.add(text.substring(start, newline));
+            start = newline + 1;
+        }
+        lines.add(text.substring(start));
+        return lines;
+    }
+    
+    private static int stackBlockEnd(List<String> lines, int start) {
+        int end = start;
+        while (end < lines.size() && isStackLine(lines.get(end))) {
+            end++;
+        }
+        return end;
+    }
+    
+    private static boolean isStackLine(String line) {
+        String trimmed = line.trim();
+        return (line.startsWith("\t") || line.startsWith("    "))
+            && (trimmed.startsWith("at ") || trimmed.startsWith("..."))
+            || line.startsWith("Caused by: ");
+    }
+    
+    private static boolean isVariable(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Timestamps: yyyy-MM-dd{sep}HH:mm:ss[{frac}SSS], accepted only if they re-format identically
+    
+    private static int timestampFormat(String line) {
+        for (int format = 1; format <= TIMESTAMP_FORMATS.length; format++) {
+            int length = timestampLength(format);
+            if (line.length() < length || !matchesLayout(line, format)) {
+                continue;
+            }
+            long millis = parseTimestamp(line, format);
+            if (millis == Long.MIN_VALUE) {
+                continue;
+            }
+            StringBuilder formatted = new StringBuilder(length);
+            formatTimestamp(millis, format, formatted);
+            if (line.regionMatches(0, formatted.toString(), 0, length)) {
+                return format;
+            }
+        }
+        return 0;
+    }
+    
+    private static int timestampLength(int format) {
+        return TIMESTAMP_FORMATS[format - 1][1] != 0 ? 23 : 19;
+    }
+    
+    private static boolean matchesLayout(String line, int format) {
+        char[] layout = TIMESTAMP_FORMATS[format - 1];
+        String pattern = "dddd-dd-dd" + layout[0] + "dd:dd:dd" + (layout[1] != 0 ? layout[1] + "ddd" : "");
+        for (int i = 0; i < pattern.length(); i++) {
+            char expected = pattern.charAt(i);
+            char actual = line.charAt(i);
+            if (expected == 'd' ? actual < '0' || actual > '9' : actual != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long parseTimestamp(String line, int format) {
+        try {
+            LocalDateTime dateTime = LocalDateTime.of(
+                Integer.parseInt(line.substring(0, 4)),
+                Integer.parseInt(line.substring(5, 7)),
+                Integer.parseInt(line.substring(8, 10)),
+                Integer.parseInt(line.substring(11, 13)),
+                Integer.parseInt(line.substring(14, 16)),
+                Integer.parseInt(line.substring(17, 19)),
+                TIMESTAMP_FORMATS[format - 1][1] != 0 ? Integer.parseInt(line.substring(20, 23)) * 1_000_000 : 0
+            );
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+    
+    private static void formatTimestamp(long millis, int format, StringBuilder out) {
+        char[] layout = TIMESTAMP_FORMATS[format - 1];
+        LocalDateTime t = LocalDateTime.ofEpochSecond(
+            Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+        pad(out, t.getYear(), 4).append('-');
+        pad(out, t.getMonthValue(), 2).append('-');
+        pad(out, t.getDayOfMonth(), 2).append(layout[0]);
+        pad(out, t.getHour(), 2).append(':');
+        pad(out, t.getMinute(), 2).append(':');
+        pad(out, t.getSecond(), 2);
+        if (layout[1] != 0) {
+            pad(out.append(layout[1]), t.getNano() / 1_000_000, 3);
+        }
+    }
+    
+    private static StringBuilder pad(StringBuilder out, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            out.append('0');
+        }
+        return out.append(digits);
+    }
+    
+    // Column encoding helpers
+    
+    private static final class Columns {
+        static final int COUNT = 7;
+        
+        final ByteArrayOutputStream templates = new ByteArrayOutputStream();
+        final ByteArrayOutputStream ops = new ByteArrayOutputStream();
+        final ByteArrayOutputStream templateRefs = new ByteArrayOutputStream();
+        final ByteArrayOutputStream timestamps = new ByteArrayOutputStream();
+        final ByteArrayOutputStream variables = new ByteArrayOutputStream();
+        final ByteArrayOutputStream literals = new ByteArrayOutputStream();
+        final ByteArrayOutputStream blockRefs = new ByteArrayOutputStream();
+        
+        ByteArrayOutputStream[] all() {
+            return new ByteArrayOutputStream[] {templates, ops, templateRefs, timestamps, variables, literals, blockRefs};
+        }
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+    
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    // Chars are encoded individually (1-3 bytes each) so unpaired surrogates survive the round trip
+    private static void writeChars(ByteArrayOutputStream out, String value) {
+        writeVarint(out, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+    
+    private static String readChars(ByteBuffer in) {
+        int length = (int) readVarint(in);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = in.get() & 0xFF;
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xE0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | (in.get() & 0x3F));
+            } else {
+                chars[i] = (char) (((b & 0x0F) << 12) | ((in.get() & 0x3F) << 6) | (in.get() & 0x3F));
+            }
+        }
+        return new String(chars);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.textqr.converter.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only view of a file mapped into memory with FileChannel.map.
+ * Files larger than one mapping window are covered by consecutive windows, so
+ * inputs over 2 GB can be hashed and compressed without copying them onto the heap.
+ */
+public class MappedFile implements Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final List<MappedByteBuffer> windows;
+    
+    private MappedFile(Path path, FileChannel channel, int windowSize) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+        
+        List<MappedByteBuffer> mapped = new ArrayList<>();
+        for (long position = 0; position < size; position += windowSize) {
+            long length = Math.min(windowSize, size - position);
+            mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+        this.windows = Collections.unmodifiableList(mapped);
+    }
+    
+    public static MappedFile open(Path path) throws IOException {
+        return open(path, DEFAULT_WINDOW_SIZE);
+    }
+    
+    static MappedFile open(Path path, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            MappedFile file = new MappedFile(path, channel, windowSize);
+            PipelineMetrics.getInstance().add(PipelineMetrics.Counter.INPUT_BYTES, file.size);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Returns independent read-only buffers over the mapping windows, in file order.
+     */
+    public List<ByteBuffer> buffers() {
+        List<ByteBuffer> views = new ArrayList<>(windows.size());
+        for (MappedByteBuffer window : windows) {
+            views.add(window.asReadOnlyBuffer());
+        }
+        return views;
+    }
+    
+    public InputStream openStream() {
+        return new WindowInputStream(buffers());
+    }
+    
+    public Reader openReader() {
+        return new InputStreamReader(openStream(), StandardCharsets.UTF_8);
+    }
+    
+    public byte[] readAllBytes() {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("File is too large to load into memory: " + path);
+        }
+        
+        byte[] bytes = new byte[(int) size];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers()) {
+            int length = buffer.remaining();
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Decodes the whole file as UTF-8. Only meant for display; processing should use the buffers.
+     */
+    public String decode() {
+        return new String(readAllBytes(), StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        // Mappings stay valid after the channel is closed and are released by the GC
+        channel.close();
+    }
+    
+    private static final class WindowInputStream extends InputStream {
+        private final List<ByteBuffer> buffers;
+        private int current;
+        
+        WindowInputStream(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+        
+        private ByteBuffer buffer() {
+            while (current < buffers.size() && !buffers.get(current).hasRemaining()) {
+                current++;
+            }
+            return current < buffers.size() ? buffers.get(current) : null;
+        }
+        
+        @Override
+        public int read() {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = buffer();
+            if (buffer == null) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? 0 : buffer.remaining();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.textqr.converter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public enum PayloadCodec {
+    PLAIN,
+    GZIP,
+    // Log-aware columnar transform followed by GZIP
+    LOG_GZIP,
+    // Binary delta against a base the receiver already holds, see BinaryDelta
+    DELTA,
+    // Binary delta followed by GZIP
+    DELTA_GZIP;
+    
+    public static PayloadCodec of(boolean useCompression) {
+        return useCompression ? GZIP : PLAIN;
+    }
+    
+    public static PayloadCodec delta(boolean useCompression) {
+        return useCompression ? DELTA_GZIP : DELTA;
+    }
+    
+    /**
+     * Whether the payload is a patch that rebuilds the original only together with its base.
+     */
+    public boolean isDelta() {
+        return this == DELTA || this == DELTA_GZIP;
+    }
+    
+    public byte[] encode(String text) {
+        requireText();
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.COMPRESS)) {
+            return encodeUntimed(text);
+        }
+    }
+    
+    public byte[] encode(byte[] data) {
+        requireText();
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.COMPRESS)) {
+            switch (this) {
+                case GZIP:
+                    return gzip(data);
+                case LOG_GZIP:
+                    return gzip(LogCompactor.compact(data));
+                default:
+                    return data;
+            }
+        }
+    }
+    
+    public byte[] encode(MappedFile file) {
+        requireText();
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.COMPRESS)) {
+            switch (this) {
+                case GZIP:
+                    return file.size() >= CompressionUtil.PARALLEL_THRESHOLD
+                        ? CompressionUtil.compressParallel(file)
+                        : CompressionUtil.compress(file.openStream());
+                case LOG_GZIP:
+                    // Byte lines, so input that is not valid UTF-8 still comes back unchanged
+                    return gzip(LogCompactor.compact(file.readAllBytes()));
+                default:
+                    return file.readAllBytes();
+            }
+        }
+    }
+    
+    public byte[] encode(InputStream in) throws IOException {
+        requireText();
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.COMPRESS)) {
+            switch (this) {
+                case GZIP:
+                    // Compressed while reading, so only the compressed payload is held
+                    return CompressionUtil.compress(in);
+                case LOG_GZIP:
+                    return gzip(LogCompactor.compact(in.readAllBytes()));
+                default:
+                    return in.readAllBytes();
+            }
+        }
+    }
+    
+    public ByteBuffer encodeBuffer(MappedFile file) {
+        if (this == PLAIN) {
+            // Uncompressed payload within a single window is chunked straight from the mapping
+            List<ByteBuffer> buffers = file.buffers();
+            if (buffers.size() <= 1) {
+                return buffers.isEmpty() ? ByteBuffer.allocate(0) : buffers.get(0);
+            }
+        }
+        return ByteBuffer.wrap(encode(file));
+    }
+    
+    private byte[] encodeUntimed(String text) {
+        switch (this) {
+            case GZIP:
+                return gzip(text.getBytes(StandardCharsets.UTF_8));
+            case LOG_GZIP:
+                return gzip(LogCompactor.compact(text));
+            default:
+                return text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    public String decode(byte[] data) {
+        requireText();
+        switch (this) {
+            case GZIP:
+                return new String(CompressionUtil.decompressParallel(data), StandardCharsets.UTF_8);
+            case LOG_GZIP:
+                return LogCompactor.expand(CompressionUtil.decompressParallel(data));
+            default:
+                return new String(data, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Returns the original bytes, which for mapped or streamed input need not be valid UTF-8.
+     */
+    public byte[] decodeBytes(byte[] data) {
+        requireText();
+        switch (this) {
+            case GZIP:
+                return CompressionUtil.decompressParallel(data);
+            case LOG_GZIP:
+                return LogCompactor.expandBytes(CompressionUtil.decompressParallel(data));
+            default:
+                return data;
+        }
+    }
+    
+    public byte[] encodeDelta(byte[] base, byte[] target) {
+        requireDelta();
+        byte[] delta = BinaryDelta.compute(base, target);
+        if (this == DELTA) {
+            return delta;
+        }
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.COMPRESS)) {
+            return gzip(delta);
+        }
+    }
+    
+    public byte[] decodeDelta(byte[] data, byte[] base) {
+        requireDelta();
+        return BinaryDelta.apply(base, this == DELTA_GZIP ? CompressionUtil.decompressParallel(data) : data);
+    }
+    
+    private void requireText() {
+        if (isDelta()) {
+            throw new IllegalStateException(this + " payloads are patches; encode and decode them against their base");
+        }
+    }
+    
+    private void requireDelta() {
+        if (!isDelta()) {
+            throw new IllegalStateException(this + " is not a delta codec");
+        }
+    }
+    
+    private static byte[] gzip(byte[] data) {
+        // Large inputs are compressed as independent members across all cores
+        return data.length >= CompressionUtil.PARALLEL_THRESHOLD
+            ? CompressionUtil.compressParallel(data)
+            : CompressionUtil.compress(data);
+    }
+}
\ No newline at end of file
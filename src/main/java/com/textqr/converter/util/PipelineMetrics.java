@@ -0,0 +1,261 @@
+package com.textqr.converter.util;
+
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timers, histograms and counters for the conversion pipeline.
+ * Stages are timed with try-with-resources; results are exposed over JMX,
+ * as a text summary and as JSON.
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineMetrics.class);
+    
+    private static final String OBJECT_NAME = "com.textqr.converter:type=PipelineMetrics";
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    
+    // Power-of-two nanosecond buckets
+    private static final int HISTOGRAM_BUCKETS = 64;
+    
+    public enum Stage {
+        NORMALIZE,
+        COMPRESS,
+        CHUNK,
+        HASH,
+        ENCODE,
+        RASTERIZE,
+        PNG_ENCODE,
+        WRITE
+    }
+    
+    public enum Counter {
+        INPUT_BYTES,
+        PAYLOAD_BYTES,
+        CHUNKS,
+        SYMBOLS,
+        OUTPUT_BYTES,
+        CACHE_HITS,
+        CACHE_MISSES
+    }
+    
+    private final Map<Stage, StageStats> stages = new EnumMap<>(Stage.class);
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    // Looked up once statistics are requested, so plain runs never load java.lang.management
+    private volatile com.sun.management.ThreadMXBean allocationBean;
+    
+    private PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageStats());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+    
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+    
+    public Timer time(Stage stage) {
+        return new Timer(stages.get(stage));
+    }
+    
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+    
+    public void add(Counter counter, long amount) {
+        counters.get(counter).add(amount);
+    }
+    
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+    
+    public long getStageCount(Stage stage) {
+        return stages.get(stage).count.sum();
+    }
+    
+    /**
+     * Starts measuring the memory each stage allocates. Until then stages are only timed.
+     */
+    public synchronized void trackAllocations() {
+        if (allocationBean != null) {
+            return;
+        }
+        
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            bean.setThreadAllocatedMemoryEnabled(true);
+            allocationBean = bean;
+        }
+    }
+    
+    public void registerMBean() {
+        trackAllocations();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to register metrics MBean", e);
+        }
+    }
+    
+    @Override
+    public long getChunkCount() {
+        return get(Counter.CHUNKS);
+    }
+    
+    @Override
+    public long getInputBytes() {
+        return get(Counter.INPUT_BYTES);
+    }
+    
+    @Override
+    public long getCacheHits() {
+        return get(Counter.CACHE_HITS);
+    }
+    
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-11s %8s %12s %10s %10s %10s %12s%n",
+            "Stage", "Count", "Total ms", "Mean us", "p99 us", "Max us", "Alloc KB"));
+        for (Map.Entry<Stage, StageStats> entry : stages.entrySet()) {
+            StageStats stats = entry.getValue();
+            long count = stats.count.sum();
+            if (count == 0) {
+                continue;
+            }
+            long total = stats.totalNanos.sum();
+            summary.append(String.format("%-11s %8d %12.2f %10.1f %10.1f %10.1f %12d%n",
+                entry.getKey(), count, total / 1e6, total / 1e3 / count,
+                stats.percentile(0.99) / 1e3, stats.maxNanos.get() / 1e3, stats.allocatedBytes.sum() / 1024));
+        }
+        for (Map.Entry<Counter, LongAdder> entry : counters.entrySet()) {
+            summary.append(String.format("%-14s %d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return summary.toString();
+    }
+    
+    @Override
+    public String getJson() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        Map<String, Object> stageMap = new LinkedHashMap<>();
+        for (Map.Entry<Stage, StageStats> entry : stages.entrySet()) {
+            StageStats stats = entry.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", stats.count.sum());
+            values.put("totalNanos", stats.totalNanos.sum());
+            values.put("maxNanos", stats.maxNanos.get());
+            values.put("p50Nanos", stats.percentile(0.50));
+            values.put("p99Nanos", stats.percentile(0.99));
+            values.put("allocatedBytes", stats.allocatedBytes.sum());
+            stageMap.put(entry.getKey().name(), values);
+        }
+        Map<String, Object> counterMap = new LinkedHashMap<>();
+        for (Map.Entry<Counter, LongAdder> entry : counters.entrySet()) {
+            counterMap.put(entry.getKey().name(), entry.getValue().sum());
+        }
+        root.put("stages", stageMap);
+        root.put("counters", counterMap);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+    
+    @Override
+    public void reset() {
+        for (StageStats stats : stages.values()) {
+            stats.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+    }
+    
+    // -1 while allocations are not tracked
+    private long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = allocationBean;
+        return bean != null ? bean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+    }
+    
+    public final class Timer implements AutoCloseable {
+        private final StageStats stats;
+        private final long startNanos;
+        private final long startAllocated;
+        
+        private Timer(StageStats stats) {
+            this.stats = stats;
+            this.startAllocated = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+        
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - startNanos;
+            // A timer started before tracking was switched on has no baseline
+            long allocated = startAllocated < 0 ? 0L : Math.max(0L, allocatedBytes() - startAllocated);
+            stats.record(elapsed, allocated);
+        }
+    }
+    
+    private static final class StageStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+        final LongAdder allocatedBytes = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+        
+        void record(long nanos, long allocated) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            allocatedBytes.add(allocated);
+            histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1L, nanos)));
+        }
+        
+        long percentile(double quantile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0L;
+            }
+            long threshold = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+                seen += histogram.get(bucket);
+                if (seen >= threshold) {
+                    // Upper bound of the bucket
+                    return bucket >= 62 ? Long.MAX_VALUE : (2L << bucket) - 1;
+                }
+            }
+            return maxNanos.get();
+        }
+        
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            allocatedBytes.reset();
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram.set(i, 0L);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.textqr.converter.util;
+
+public interface PipelineMetricsMBean {
+    
+    long getChunkCount();
+    
+    long getInputBytes();
+    
+    long getCacheHits();
+    
+    String getSummary();
+    
+    String getJson();
+    
+    void reset();
+}
\ No newline at end of file
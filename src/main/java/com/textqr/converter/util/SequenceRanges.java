@@ -0,0 +1,89 @@
+package com.textqr.converter.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Parses and formats chunk sequence number lists such as "37, 112-118", the form in
+ * which a receiver reports the chunks it is missing.
+ */
+public class SequenceRanges {
+    
+    /**
+     * Returns the listed sequence numbers in ascending order without duplicates. Ranges
+     * are inclusive and may use a hyphen or an en dash; entries are separated by commas
+     * or whitespace.
+     */
+    public static List<Integer> parse(String spec, int maxSequence) {
+        TreeSet<Integer> sequences = new TreeSet<>();
+        for (String entry : spec.trim().split("[,\\s]+")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            
+            String[] bounds = entry.split("[-–]", -1);
+            if (bounds.length > 2) {
+                throw new IllegalArgumentException("Invalid sequence range: " + entry);
+            }
+            int first = parseSequence(bounds[0], entry);
+            int last = bounds.length == 2 ? parseSequence(bounds[1], entry) : first;
+            if (first > last) {
+                throw new IllegalArgumentException("Sequence range runs backwards: " + entry);
+            }
+            if (first < 1 || last > maxSequence) {
+                throw new IllegalArgumentException("Sequence range " + entry + " is outside 1-" + maxSequence);
+            }
+            for (int sequence = first; sequence <= last; sequence++) {
+                sequences.add(sequence);
+            }
+        }
+        
+        if (sequences.isEmpty()) {
+            throw new IllegalArgumentException("No sequence numbers given");
+        }
+        return new ArrayList<>(sequences);
+    }
+    
+    private static int parseSequence(String value, String entry) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sequence range: " + entry);
+        }
+    }
+    
+    /**
+     * Formats sequence numbers compactly, collapsing consecutive runs into ranges.
+     */
+    public static String format(Collection<Integer> sequenceNumbers) {
+        StringBuilder out = new StringBuilder();
+        Integer start = null;
+        Integer previous = null;
+        for (int sequence : new TreeSet<>(sequenceNumbers)) {
+            if (previous != null && sequence == previous + 1) {
+                previous = sequence;
+                continue;
+            }
+            appendRange(out, start, previous);
+            start = sequence;
+            previous = sequence;
+        }
+        appendRange(out, start, previous);
+        return out.toString();
+    }
+    
+    private static void appendRange(StringBuilder out, Integer start, Integer end) {
+        if (start == null) {
+            return;
+        }
+        if (out.length() > 0) {
+            out.append(", ");
+        }
+        out.append(start);
+        if (!start.equals(end)) {
+            out.append('-').append(end);
+        }
+    }
+}
\ No newline at end of file
@@ -1,24 +1,82 @@
 package com.textqr.converter.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 
 public class TextChunker {
-    private static final int MAX_CHUNK_SIZE = 2953; // QR Code capacity at Level H with alphanumeric
-    private static final int METADATA_OVERHEAD = 150; // Reserved for JSON metadata
-    private static final int EFFECTIVE_CHUNK_SIZE = MAX_CHUNK_SIZE - METADATA_OVERHEAD;
+    /**
+     * Splits the text's payload at the given chunk size, normally the one its session
+     * layout was optimized for.
+     */
+    public static List<String> chunkText(String text, boolean useCompression, int chunkSize) {
+        return splitPayload(encodePayload(text, useCompression), chunkSize);
+    }
+    
+    public static String encodePayload(String text, boolean useCompression) {
+        return encodePayload(text, PayloadCodec.of(useCompression));
+    }
+    
+    public static String encodePayload(String text, PayloadCodec codec) {
+        return Base64.getEncoder().encodeToString(codec.encode(text));
+    }
     
-    public static List<String> chunkText(String text, boolean useCompression) {
+    public static String encodePayload(MappedFile file, PayloadCodec codec) {
+        return Base64.getEncoder().encodeToString(codec.encode(file));
+    }
+    
+    public static int encodedLength(int byteLength) {
+        return (byteLength + 2) / 3 * 4;
+    }
+    
+    /**
+     * Base64-encodes each chunk straight from its slice of the payload bytes.
+     * The chunk size must be a multiple of 4 so every slice ends on a 3-byte group,
+     * which makes the result identical to splitting the encoded payload string.
+     */
+    public static List<String> splitPayload(ByteBuffer data, int chunkSize) {
         List<String> chunks = new ArrayList<>();
-        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        if (!data.hasRemaining()) {
+            chunks.add("");
+            return chunks;
+        }
+        if (chunkSize <= 0 || chunkSize % 4 != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 4: " + chunkSize);
+        }
+        
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.CHUNK)) {
+            Base64.Encoder encoder = Base64.getEncoder();
+            int bytesPerChunk = chunkSize / 4 * 3;
+            ByteBuffer source = data.duplicate();
+            while (source.hasRemaining()) {
+                int length = Math.min(bytesPerChunk, source.remaining());
+                ByteBuffer slice = source.slice();
+                slice.limit(length);
+                
+                ByteBuffer encoded = encoder.encode(slice);
+                chunks.add(new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1));
+                source.position(source.position() + length);
+            }
+        }
         
-        if (useCompression) {
-            data = CompressionUtil.compress(data);
+        PipelineMetrics.getInstance().add(PipelineMetrics.Counter.CHUNKS, chunks.size());
+        return chunks;
+    }
+    
+    public static List<String> splitPayload(String encodedData, int chunkSize) {
+        if (chunkSize <= 0 && !encodedData.isEmpty()) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
         }
         
-        String encodedData = Base64.getEncoder().encodeToString(data);
+        List<String> chunks = new ArrayList<>();
         
         // Handle empty text case - always return at least one chunk
         if (encodedData.isEmpty()) {
@@ -26,39 +84,111 @@ public class TextChunker {
             return chunks;
         }
         
-        int currentIndex = 0;
-        while (currentIndex < encodedData.length()) {
-            int endIndex = Math.min(currentIndex + EFFECTIVE_CHUNK_SIZE, encodedData.length());
-            chunks.add(encodedData.substring(currentIndex, endIndex));
-            currentIndex = endIndex;
+        try (PipelineMetrics.Timer ignored = PipelineMetrics.getInstance().time(PipelineMetrics.Stage.CHUNK)) {
+            int currentIndex = 0;
+            while (currentIndex < encodedData.length()) {
+                int endIndex = Math.min(currentIndex + chunkSize, encodedData.length());
+                chunks.add(encodedData.substring(currentIndex, endIndex));
+                currentIndex = endIndex;
+            }
         }
         
+        PipelineMetrics.getInstance().add(PipelineMetrics.Counter.CHUNKS, chunks.size());
         return chunks;
     }
     
     public static String reconstructText(List<String> chunks, boolean wasCompressed) {
-        StringBuilder combined = new StringBuilder();
+        return reconstructText(chunks, PayloadCodec.of(wasCompressed));
+    }
+    
+    public static String reconstructText(List<String> chunks, PayloadCodec codec) {
+        return codec.decode(decodePayload(chunks));
+    }
+    
+    public static byte[] reconstructDelta(List<String> chunks, boolean wasCompressed, byte[] base) {
+        return reconstructDelta(chunks, PayloadCodec.delta(wasCompressed), base);
+    }
+    
+    public static byte[] reconstructDelta(List<String> chunks, PayloadCodec codec, byte[] base) {
+        return codec.decodeDelta(decodePayload(chunks), base);
+    }
+    
+    /**
+     * Rebuilds the original bytes with the codec named in the session's manifest. The
+     * base is only needed, and only read, for delta sessions.
+     */
+    public static byte[] reconstruct(List<String> chunks, PayloadCodec codec, byte[] base) {
+        if (!codec.isDelta()) {
+            return codec.decodeBytes(decodePayload(chunks));
+        }
+        if (base == null) {
+            throw new IllegalArgumentException("A " + codec + " session can only be rebuilt from its base");
+        }
+        return reconstructDelta(chunks, codec, base);
+    }
+    
+    public static byte[] decodePayload(List<String> chunks) {
+        long encodedLength = 0;
         for (String chunk : chunks) {
-            combined.append(chunk);
+            encodedLength += chunk.length();
         }
-        
-        byte[] decodedData = Base64.getDecoder().decode(combined.toString());
-        
-        if (wasCompressed) {
-            decodedData = CompressionUtil.decompress(decodedData);
+        if (encodedLength % 4 != 0) {
+            // Unpadded input: let the decoder deal with the whole string
+            StringBuilder combined = new StringBuilder((int) encodedLength);
+            for (String chunk : chunks) {
+                combined.append(chunk);
+            }
+            return Base64.getDecoder().decode(combined.toString());
         }
         
-        return new String(decodedData, StandardCharsets.UTF_8);
+        // Decode chunk by chunk into an output buffer of the exact final size
+        byte[] output = new byte[(int) (encodedLength / 4 * 3 - paddingLength(chunks))];
+        try (InputStream in = Base64.getDecoder().wrap(new SequenceInputStream(chunkStreams(chunks)))) {
+            int read = in.readNBytes(output, 0, output.length);
+            if (read != output.length || in.read() != -1) {
+                throw new IllegalArgumentException("Payload length does not match its Base64 padding");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid Base64 payload", e);
+        }
+        return output;
     }
     
-    public static int estimateChunkCount(String text, boolean useCompression) {
-        byte[] data = text.getBytes(StandardCharsets.UTF_8);
-        
-        if (useCompression) {
-            data = CompressionUtil.compress(data);
+    private static int paddingLength(List<String> chunks) {
+        int padding = 0;
+        for (int i = chunks.size() - 1; i >= 0 && padding < 2; i--) {
+            String chunk = chunks.get(i);
+            for (int j = chunk.length() - 1; j >= 0 && padding < 2; j--) {
+                if (chunk.charAt(j) != '=') {
+                    return padding;
+                }
+                padding++;
+            }
+        }
+        return padding;
+    }
+    
+    private static Enumeration<InputStream> chunkStreams(List<String> chunks) {
+        Iterator<String> iterator = chunks.iterator();
+        return new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+            
+            @Override
+            public InputStream nextElement() {
+                return new ByteArrayInputStream(iterator.next().getBytes(StandardCharsets.ISO_8859_1));
+            }
+        };
+    }
+    
+    public static int estimateChunkCount(String text, boolean useCompression, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
         }
         
-        String encodedData = Base64.getEncoder().encodeToString(data);
-        return (int) Math.ceil((double) encodedData.length() / EFFECTIVE_CHUNK_SIZE);
+        int payloadLength = encodedLength(PayloadCodec.of(useCompression).encode(text).length);
+        return Math.max(1, (payloadLength + chunkSize - 1) / chunkSize);
     }
 }
\ No newline at end of file
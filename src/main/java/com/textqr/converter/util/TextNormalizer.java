@@ -0,0 +1,242 @@
+package com.textqr.converter.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass text normalization: line endings, NUL stripping and trimming, plus
+ * optional whitespace collapsing, ANSI escape stripping and timestamp prefix removal.
+ * Input can be a CharSequence or a Reader; only the output buffer is ever held, and
+ * the result is either a String or UTF-8 bytes encoded straight from that buffer.
+ */
+public class TextNormalizer {
+    public static final TextNormalizer DEFAULT = new TextNormalizer(false, false, false);
+    
+    private static final int BUFFER_SIZE = 8192;
+    private static final char ESC = 0x1B;
+    
+    // Timestamp prefixes are only looked for within this many characters of a line start
+    private static final int TIMESTAMP_PROBE_LENGTH = 48;
+    private static final Pattern TIMESTAMP_PREFIX = Pattern.compile(
+        "\\[?(?:\\d{4}-\\d{2}-\\d{2}[T ])?\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d{1,9})?(?:Z|[+-]\\d{2}:?\\d{2})?\\]?[ \\t]*");
+    
+    private final boolean collapseWhitespace;
+    private final boolean stripAnsiEscapes;
+    private final boolean stripTimestamps;
+    
+    public TextNormalizer(boolean collapseWhitespace, boolean stripAnsiEscapes, boolean stripTimestamps) {
+        this.collapseWhitespace = collapseWhitespace;
+        this.stripAnsiEscapes = stripAnsiEscapes;
+        this.stripTimestamps = stripTimestamps;
+    }
+    
+    public String normalize(CharSequence text) {
+        if (text == null) {
+            return "";
+        }
+        
+        Pass pass = new Pass(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            pass.accept(text.charAt(i));
+        }
+        return pass.finish();
+    }
+    
+    public String normalize(Reader reader, int expectedLength) throws IOException {
+        return read(reader, expectedLength).finish();
+    }
+    
+    /**
+     * Normalizes straight into UTF-8. The bytes are encoded from the output buffer, so
+     * no String of the normalized text is built on the way.
+     */
+    public byte[] normalizeToUtf8(Reader reader, int expectedLength) throws IOException {
+        return read(reader, expectedLength).finishUtf8();
+    }
+    
+    private Pass read(Reader reader, int expectedLength) throws IOException {
+        Pass pass = new Pass(expectedLength);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                pass.accept(buffer[i]);
+            }
+        }
+        return pass;
+    }
+    
+    // Unpaired surrogates count as the single '?' the encoder replaces them with
+    private static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+    
+    private enum EscapeState {
+        NONE,
+        ESCAPE,
+        CSI
+    }
+    
+    private final class Pass {
+        private final StringBuilder out;
+        private final Matcher timestampMatcher;
+        private boolean pendingCarriageReturn;
+        private boolean started;
+        private EscapeState escapeState = EscapeState.NONE;
+        private int lineStart;
+        private boolean lineProbed;
+        
+        Pass(int expectedLength) {
+            this.out = new StringBuilder(Math.max(16, expectedLength));
+            this.timestampMatcher = stripTimestamps ? TIMESTAMP_PREFIX.matcher(out) : null;
+            this.lineProbed = !stripTimestamps;
+        }
+        
+        void accept(char c) {
+            // CR and CRLF both become a single LF
+            if (pendingCarriageReturn) {
+                pendingCarriageReturn = false;
+                emit('\n');
+                if (c == '\n') {
+                    return;
+                }
+            }
+            if (c == '\r') {
+                pendingCarriageReturn = true;
+                return;
+            }
+            
+            if (c == '\0') {
+                return;
+            }
+            
+            if (stripAnsiEscapes && skipEscape(c)) {
+                return;
+            }
+            
+            emit(c);
+        }
+        
+        private boolean skipEscape(char c) {
+            switch (escapeState) {
+                case ESCAPE:
+                    // ESC [ starts a control sequence; any other ESC x is a two-character escape
+                    escapeState = c == '[' ? EscapeState.CSI : EscapeState.NONE;
+                    return true;
+                case CSI:
+                    if (c >= 0x40 && c <= 0x7E) {
+                        escapeState = EscapeState.NONE;
+                    }
+                    return true;
+                default:
+                    if (c == ESC) {
+                        escapeState = EscapeState.ESCAPE;
+                        return true;
+                    }
+                    return false;
+            }
+        }
+        
+        private void emit(char c) {
+            // Leading whitespace is trimmed as it arrives
+            if (!started) {
+                if (c <= ' ') {
+                    return;
+                }
+                started = true;
+            }
+            
+            if (c == '\n') {
+                probeTimestamp();
+                out.append('\n');
+                lineStart = out.length();
+                lineProbed = !stripTimestamps;
+                return;
+            }
+            
+            if (collapseWhitespace && (c == ' ' || c == '\t')) {
+                int length = out.length();
+                if (length > lineStart && out.charAt(length - 1) == ' ') {
+                    return;
+                }
+                c = ' ';
+            }
+            
+            out.append(c);
+            if (!lineProbed && out.length() - lineStart >= TIMESTAMP_PROBE_LENGTH) {
+                probeTimestamp();
+            }
+        }
+        
+        private void probeTimestamp() {
+            if (lineProbed) {
+                return;
+            }
+            lineProbed = true;
+            
+            timestampMatcher.region(lineStart, out.length());
+            if (timestampMatcher.lookingAt()) {
+                // Only the short probed prefix of the line is shifted
+                out.delete(lineStart, timestampMatcher.end());
+            }
+        }
+        
+        String finish() {
+            complete();
+            return out.toString();
+        }
+        
+        byte[] finishUtf8() {
+            complete();
+            
+            // Sized exactly up front, so the encoded bytes are never copied again
+            byte[] bytes = new byte[utf8Length(out)];
+            ByteBuffer target = ByteBuffer.wrap(bytes);
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoder.encode(CharBuffer.wrap(out), target, true);
+            encoder.flush(target);
+            return bytes;
+        }
+        
+        private void complete() {
+            if (pendingCarriageReturn) {
+                pendingCarriageReturn = false;
+                emit('\n');
+            }
+            probeTimestamp();
+            
+            // Trailing whitespace is trimmed once at the end
+            int length = out.length();
+            while (length > 0 && out.charAt(length - 1) <= ' ') {
+                length--;
+            }
+            out.setLength(length);
+        }
+    }
+}
\ No newline at end of file
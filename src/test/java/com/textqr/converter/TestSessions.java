@@ -0,0 +1,49 @@
+package com.textqr.converter;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.core.QRGenerator;
+import com.textqr.converter.core.QRLayoutOptimizer;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+
+import java.util.Random;
+
+/**
+ * Sessions over generated log-like text, shared by the tests. A low maximum version
+ * gives a session with many chunks; a high one with a weak level fills symbols up.
+ */
+public final class TestSessions {
+    private static final QRGenerator GENERATOR = new QRGenerator();
+    
+    private TestSessions() {
+    }
+    
+    /**
+     * Returns the same text for the same line count: numbered lines, each with a
+     * pseudo-random hex value that compression cannot fold away.
+     */
+    public static String text(int lines) {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(lines);
+        for (int i = 0; i < lines; i++) {
+            text.append("test line ").append(i).append(' ').append(Long.toHexString(random.nextLong())).append('\n');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Creates a session over the text with the COMPACT frame format.
+     */
+    public static QRSession create(String text, ErrorCorrectionLevel errorCorrection, int maxVersion,
+                                   PayloadCodec codec) {
+        return create(text, errorCorrection, maxVersion, FrameFormat.COMPACT, codec);
+    }
+    
+    public static QRSession create(String text, ErrorCorrectionLevel errorCorrection, int maxVersion,
+                                   FrameFormat format, PayloadCodec codec) {
+        QRLayoutOptimizer.Policy policy = new QRLayoutOptimizer.Policy(errorCorrection, maxVersion,
+            QRLayoutOptimizer.Objective.MIN_SYMBOLS, format);
+        return GENERATOR.createSession(text, codec, policy);
+    }
+}
\ No newline at end of file
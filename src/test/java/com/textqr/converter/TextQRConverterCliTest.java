@@ -0,0 +1,270 @@
+package com.textqr.converter;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.TextChunker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextQRConverterCliTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private Path write(String name, int lines) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(name).append(" line ").append(i).append('\n');
+        }
+        Path file = tempDir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    @Test
+    void testResolvesDirectoriesGlobsAndListFiles() throws IOException {
+        Path a = write("logs/a.log", 1);
+        Path b = write("logs/b.log", 1);
+        Path c = write("logs/nested/c.txt", 1);
+        Path list = tempDir.resolve("inputs.txt");
+        Files.write(list, Arrays.asList("# incident bundle", c.toString(), "", a.toString()));
+        
+        assertEquals(Arrays.asList(a, b), TextQRConverterCli.resolveInputs(
+            Collections.singletonList(tempDir.resolve("logs") + "/*.log")));
+        assertEquals(Arrays.asList(a, b, c), TextQRConverterCli.resolveInputs(
+            Collections.singletonList(tempDir.resolve("logs").toString())));
+        assertEquals(Arrays.asList(c, a, b), TextQRConverterCli.resolveInputs(
+            Arrays.asList("@" + list, a.toString(), b.toString())));
+    }
+    
+    @Test
+    void testBatchWritesPerFileOutputAndReportsFailures() throws Exception {
+        Path small = write("small.log", 10);
+        Path large = write("large.log", 3000);
+        Path missing = tempDir.resolve("missing.log");
+        File outDir = tempDir.resolve("out").toFile();
+        
+        int exitCode = TextQRConverterCli.run(new String[]{
+            "--cli", small.toString(), large.toString(), missing.toString(), outDir.toString(), "--compress"});
+        
+        assertEquals(1, exitCode);
+        for (String name : new String[]{"small.log", "large.log"}) {
+            File[] images = new File(outDir, name).listFiles((dir, file) -> file.endsWith(".png"));
+            assertNotNull(images, name);
+            assertTrue(images.length > 0, name);
+        }
+        
+        List<String> summary = Files.readAllLines(new File(outDir, "batch_summary.txt").toPath());
+        assertEquals("Batch summary: 3 file(s), 2 succeeded, 1 failed", summary.get(0));
+        assertTrue(summary.stream().anyMatch(line -> line.startsWith("FAILED") && line.contains("missing.log")));
+    }
+    
+    @Test
+    void testSingleFileKeepsFlatOutputDirectory() throws Exception {
+        Path input = write("single.log", 20);
+        File outDir = tempDir.resolve("flat").toFile();
+        
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(), outDir.toString()}));
+        
+        File[] images = outDir.listFiles((dir, file) -> file.startsWith("qr_") && file.endsWith(".png"));
+        assertNotNull(images);
+        assertTrue(images.length > 0);
+        assertFalse(new File(outDir, "batch_summary.txt").exists());
+    }
+    
+    @Test
+    void testStoredSessionIsExportedAgainWithoutSource() throws Exception {
+        Path input = write("stored.log", 400);
+        Path store = tempDir.resolve("store");
+        File first = tempDir.resolve("first").toFile();
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(), first.toString(),
+            "--compress", "--store=" + store}));
+        
+        File[] stored = store.toFile().listFiles((dir, file) -> file.endsWith(".tqs"));
+        assertNotNull(stored);
+        assertEquals(1, stored.length);
+        Files.delete(input);
+        
+        File second = tempDir.resolve("second").toFile();
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", stored[0].toString(), second.toString()}));
+        
+        String[] expected = first.list();
+        String[] actual = second.list();
+        assertNotNull(expected);
+        assertNotNull(actual);
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+        for (String name : expected) {
+            if (name.endsWith(".png")) {
+                assertArrayEquals(Files.readAllBytes(first.toPath().resolve(name)),
+                    Files.readAllBytes(second.toPath().resolve(name)), name);
+            }
+        }
+    }
+    
+    @Test
+    void testIncompleteStoredSessionIsRejected() throws Exception {
+        Path input = write("partial.log", 1500);
+        Path store = tempDir.resolve("store");
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+            tempDir.resolve("full").toString(), "--store=" + store}));
+        File[] stored = store.toFile().listFiles((dir, file) -> file.endsWith(".tqs"));
+        assertNotNull(stored);
+        
+        // Leave the index as an interrupted save would: only the first chunk committed
+        String name = stored[0].getName();
+        Path index = store.resolve(name.substring(0, name.length() - 4) + ".tqi");
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), 4);
+        }
+        
+        File export = tempDir.resolve("export").toFile();
+        assertEquals(1, TextQRConverterCli.run(new String[]{"--cli", stored[0].toString(), export.toString()}));
+        String[] names = export.list();
+        assertTrue(names == null || names.length == 0);
+    }
+    
+    @Test
+    void testResendExportsOnlyListedCodesOfStoredSession() throws Exception {
+        Path input = write("resend.log", 1500);
+        Path store = tempDir.resolve("store");
+        File full = tempDir.resolve("full").toFile();
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(), full.toString(),
+            "--store=" + store}));
+        File[] stored = store.toFile().listFiles((dir, file) -> file.endsWith(".tqs"));
+        assertNotNull(stored);
+        
+        File resent = tempDir.resolve("resent").toFile();
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", stored[0].toString(), resent.toString(),
+            "--resend=1,2-3"}));
+        String[] names = resent.list();
+        assertNotNull(names);
+        Arrays.sort(names);
+        assertEquals(3, names.length);
+        for (String name : names) {
+            assertArrayEquals(Files.readAllBytes(full.toPath().resolve(name)),
+                Files.readAllBytes(resent.toPath().resolve(name)), name);
+        }
+        
+        // Regenerating from the source would produce a different session id
+        assertEquals(1, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+            tempDir.resolve("rejected").toString(), "--resend=1"}));
+    }
+    
+    @Test
+    void testMalformedParityIsAUsageError() throws Exception {
+        Path input = write("parity.log", 20);
+        for (String parity : new String[]{"a:2", "10:-1", "0:2", "10:0", "10", "10:2:1", "200:56"}) {
+            assertEquals(1, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+                tempDir.resolve("rejected").toString(), "--parity=" + parity}), parity);
+        }
+        assertFalse(Files.exists(tempDir.resolve("rejected")));
+        
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+            tempDir.resolve("parity").toString(), "--parity=4:2"}));
+    }
+    
+    @Test
+    void testUnknownStreamFormatIsAUsageError() throws Exception {
+        Path input = write("format.log", 20);
+        assertEquals(1, TextQRConverterCli.run(new String[]{"--cli", input.toString(), "-", "--format=tar"}));
+        
+        // Only stdout output is written in a stream format
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+            tempDir.resolve("directory").toString(), "--format=tar"}));
+    }
+    
+    @Test
+    void testVerifyReencodesCodesThatFailSimulatedCapture() throws Exception {
+        Path input = write("verified.log", 1500);
+        File plain = tempDir.resolve("plain").toFile();
+        File capture = tempDir.resolve("capture").toFile();
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(), plain.toString(), "--verify"}));
+        assertEquals(0, TextQRConverterCli.run(new String[]{"--cli", input.toString(), capture.toString(),
+            "--verify=capture"}));
+        assertEquals(1, TextQRConverterCli.run(new String[]{"--cli", input.toString(),
+            tempDir.resolve("rejected").toString(), "--verify=camera"}));
+        
+        // Dense symbols get larger modules so they survive the simulated capture
+        File[] plainImages = plain.listFiles((dir, file) -> file.matches("qr_\\w{8}_\\d{3}\\.png"));
+        File[] captureImages = capture.listFiles((dir, file) -> file.matches("qr_\\w{8}_\\d{3}\\.png"));
+        assertNotNull(plainImages);
+        assertNotNull(captureImages);
+        assertEquals(plainImages.length, captureImages.length);
+        assertTrue(ImageIO.read(captureImages[0]).getWidth() > ImageIO.read(plainImages[0]).getWidth());
+    }
+    
+    private static byte[] runWithStandardStreams(String input, String... args) throws Exception {
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+            System.setOut(new PrintStream(captured, true));
+            assertEquals(0, TextQRConverterCli.run(args));
+        } finally {
+            System.setIn(originalIn);
+            System.setOut(originalOut);
+        }
+        return captured.toByteArray();
+    }
+    
+    @Test
+    void testStdinToNdjsonStream() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append("piped line ").append(i).append('\n');
+        }
+        
+        byte[] output = runWithStandardStreams(text.toString(), "--cli", "-", "-", "--compress", "--format=ndjson");
+        
+        List<String> data = new ArrayList<>();
+        for (String line : new String(output, StandardCharsets.UTF_8).split("\n")) {
+            JsonObject frame = JsonParser.parseString(line).getAsJsonObject();
+            assertEquals(data.size() + 1, frame.get("seq").getAsInt());
+            data.add(frame.get("data").getAsString());
+        }
+        assertEquals(text.toString(), TextChunker.reconstructText(data, PayloadCodec.GZIP));
+    }
+    
+    @Test
+    void testStdinToZipStream() throws Exception {
+        byte[] output = runWithStandardStreams("zip stream input\n".repeat(500), "--cli", "-", "-");
+        
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        assertTrue(entries.stream().anyMatch(name -> name.matches("qr_[0-9a-f]{8}_001\\.png")));
+        assertTrue(entries.stream().anyMatch(name -> name.contains("_manifest_")));
+        assertTrue(entries.stream().anyMatch(name -> name.startsWith("session_")));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.TextChunker;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColorQRDecoderTest {
+    
+    private final QRGenerator qrGenerator = new QRGenerator();
+    private final ColorQRDecoder decoder = new ColorQRDecoder();
+    
+    private static BufferedImage addNoise(BufferedImage image, Random random, double sigma) {
+        // Independent Gaussian noise on every channel of every pixel
+        BufferedImage noisy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int result = 0;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int value = (int) Math.round(((rgb >>> shift) & 0xFF) + random.nextGaussian() * sigma);
+                    result |= Math.max(0, Math.min(255, value)) << shift;
+                }
+                noisy.setRGB(x, y, result);
+            }
+        }
+        return noisy;
+    }
+    
+    @Test
+    void testNoisyColorFramesRoundTripWithTripleThroughput() throws Exception {
+        String text = TestSessions.text(200);
+        QRSession session = TestSessions.create(text, ErrorCorrectionLevel.M, 10, PayloadCodec.PLAIN);
+        int chunkCount = session.getChunkCount();
+        assertTrue(chunkCount > 3);
+        
+        List<BufferedImage> frames = qrGenerator.renderColorFrames(session);
+        assertEquals((chunkCount + 2) / 3, frames.size());
+        
+        List<String> payloads = new ArrayList<>();
+        for (BufferedImage frame : frames) {
+            for (String layer : decoder.decode(frame)) {
+                if (payloads.size() < chunkCount) {
+                    assertNotNull(layer);
+                    payloads.add(QRChunk.fromCompactString(layer).getData());
+                }
+            }
+        }
+        assertEquals(text, TextChunker.reconstructText(payloads, PayloadCodec.PLAIN));
+        
+        // Under noise the odd layer may be missed, as a camera would miss it; measure chunks per frame
+        Random random = new Random(45);
+        int decoded = 0;
+        for (BufferedImage frame : frames) {
+            for (String layer : decoder.decode(addNoise(frame, random, 25))) {
+                if (layer != null) {
+                    assertTrue(QRChunk.fromCompactString(layer).getData().length() > 0);
+                    decoded++;
+                }
+            }
+        }
+        double gain = (double) decoded / frames.size();
+        assertTrue(gain > 2.5, "throughput gain over monochrome frames was " + gain);
+    }
+    
+    @Test
+    void testBlankLayersDecodeAsNull() throws Exception {
+        QRMatrix matrix = qrGenerator.encodeMatrix("only the green layer");
+        String[] layers = decoder.decode(qrGenerator.renderColorMatrix(null, matrix, null));
+        
+        assertNull(layers[0]);
+        assertEquals("only the green layer", layers[1]);
+        assertNull(layers[2]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.model.FrameFormat;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodeVerifierTest {
+    
+    private final QRGenerator qrGenerator = new QRGenerator();
+    
+    @Test
+    void testRenderedSymbolsDecodeBackInEveryFrameFormat() throws Exception {
+        try (DecodeVerifier verifier = new DecodeVerifier(qrGenerator, 2, false)) {
+            for (FrameFormat format : FrameFormat.values()) {
+                QRSession session = TestSessions.create(TestSessions.text(40), ErrorCorrectionLevel.M, 10, format,
+                    PayloadCodec.PLAIN);
+                List<Future<DecodeVerifier.Result>> results = new ArrayList<>();
+                for (QRChunk chunk : session.getChunks()) {
+                    QRMatrix matrix = qrGenerator.encodeMatrix(session, chunk);
+                    results.add(verifier.submit(session, chunk, matrix, qrGenerator.renderMatrix(matrix)));
+                }
+                
+                for (Future<DecodeVerifier.Result> result : results) {
+                    assertEquals(DecodeVerifier.Outcome.PASSED, result.get().getOutcome(), format.toString());
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testDamagedSymbolIsReencodedAtHigherErrorCorrection() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(40), ErrorCorrectionLevel.L, 10, PayloadCodec.PLAIN);
+        assertEquals(ErrorCorrectionLevel.L, session.getLayout().getErrorCorrection());
+        QRChunk chunk = session.getChunks().get(0);
+        QRMatrix matrix = qrGenerator.encodeMatrix(session, chunk);
+        
+        // Blank out the middle third of the symbol, far beyond what level L can correct
+        BufferedImage damaged = qrGenerator.renderMatrix(matrix);
+        int third = damaged.getWidth() / 3;
+        for (int y = third; y < 2 * third; y++) {
+            for (int x = third; x < 2 * third; x++) {
+                damaged.setRGB(x, y, 0xFFFFFFFF);
+            }
+        }
+        
+        try (DecodeVerifier verifier = new DecodeVerifier(qrGenerator, 1, false)) {
+            assertNotNull(verifier.check(session, chunk, damaged));
+            
+            DecodeVerifier.Result result = verifier.submit(session, chunk, matrix, damaged).get();
+            assertEquals(DecodeVerifier.Outcome.REPAIRED, result.getOutcome());
+            assertEquals(1, result.getSequenceNumber());
+            assertNull(verifier.check(session, chunk, result.getImage()));
+            assertTrue(result.getMatrix().getDimension() > matrix.getDimension());
+        }
+    }
+    
+    @Test
+    void testDenseSymbolGetsLargerModulesToSurviveSimulatedCapture() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(400), ErrorCorrectionLevel.H, 40, PayloadCodec.PLAIN);
+        QRChunk chunk = session.getChunks().get(0);
+        QRMatrix matrix = qrGenerator.encodeMatrix(session, chunk);
+        assertTrue(matrix.getDimension() > 150);
+        
+        try (DecodeVerifier plain = new DecodeVerifier(qrGenerator, 1, false);
+             DecodeVerifier capture = new DecodeVerifier(qrGenerator, 1, true)) {
+            assertEquals(DecodeVerifier.Outcome.PASSED,
+                plain.submit(session, chunk, matrix, qrGenerator.renderMatrix(matrix)).get().getOutcome());
+            
+            DecodeVerifier.Result result = capture.submit(session, chunk, matrix, qrGenerator.renderMatrix(matrix)).get();
+            assertEquals(DecodeVerifier.Outcome.REPAIRED, result.getOutcome(), result.getDetail());
+            assertTrue(result.getImage().getWidth() > qrGenerator.renderMatrix(matrix).getWidth());
+        }
+    }
+    
+    @Test
+    void testRepairSkipsLevelsAtWhichAFullChunkNoLongerFits() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(2000), ErrorCorrectionLevel.L, 40, PayloadCodec.PLAIN);
+        assertEquals(40, session.getLayout().getVersion());
+        assertEquals(ErrorCorrectionLevel.L, QRLayoutOptimizer.maxErrorCorrection(session.getLayout()));
+        QRChunk chunk = session.getChunks().get(0);
+        QRMatrix matrix = qrGenerator.encodeMatrix(session, chunk);
+        
+        BufferedImage damaged = qrGenerator.renderMatrix(matrix);
+        int third = damaged.getWidth() / 3;
+        for (int y = third; y < 2 * third; y++) {
+            for (int x = third; x < 2 * third; x++) {
+                damaged.setRGB(x, y, 0xFFFFFFFF);
+            }
+        }
+        
+        try (DecodeVerifier verifier = new DecodeVerifier(qrGenerator, 1, false)) {
+            DecodeVerifier.Result result = verifier.submit(session, chunk, matrix, damaged).get();
+            assertEquals(DecodeVerifier.Outcome.REPAIRED, result.getOutcome(), result.getDetail());
+            assertEquals(matrix.getDimension(), result.getMatrix().getDimension());
+            assertTrue(result.getDetail().contains("EC L"), result.getDetail());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.util.PipelineMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePoolTest {
+    
+    private final PipelineMetrics metrics = PipelineMetrics.getInstance();
+    
+    @Test
+    void testReleasedImagesAreReusedWithinBound() {
+        // Room for exactly two 100x100 gray images
+        ImagePool pool = new ImagePool(2 * 100 * 100);
+        
+        BufferedImage first = pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage second = pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage third = pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        pool.release(second);
+        assertEquals(2 * 100 * 100, pool.getRetainedBytes());
+        
+        long hits = metrics.get(PipelineMetrics.Counter.CACHE_HITS);
+        assertSame(second, pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY));
+        assertSame(first, pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY));
+        // The third image did not fit the bound and was dropped
+        assertNotSame(third, pool.acquire(100, 100, BufferedImage.TYPE_BYTE_GRAY));
+        assertEquals(hits + 2, metrics.get(PipelineMetrics.Counter.CACHE_HITS));
+        assertEquals(0, pool.getRetainedBytes());
+        
+        // Other sizes and types get their own images
+        pool.release(first);
+        assertNotSame(first, pool.acquire(101, 100, BufferedImage.TYPE_BYTE_GRAY));
+        assertNotSame(first, pool.acquire(100, 100, BufferedImage.TYPE_BYTE_BINARY));
+    }
+    
+    @Test
+    void testRenderingReusesReleasedRasters() throws Exception {
+        QRGenerator pooled = new QRGenerator(ErrorCorrectionLevel.M, new ImagePool(ImagePool.DEFAULT_MAX_BYTES));
+        QRGenerator unpooled = new QRGenerator(ErrorCorrectionLevel.M, new ImagePool(0));
+        List<QRMatrix> matrices = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            matrices.add(pooled.encodeMatrix(String.format("pooled symbol %02d", i)));
+        }
+        
+        long misses = metrics.get(PipelineMetrics.Counter.CACHE_MISSES);
+        Set<BufferedImage> rasters = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (QRMatrix matrix : matrices) {
+            BufferedImage image = pooled.renderMatrix(matrix);
+            rasters.add(image);
+            pooled.releaseImage(image);
+        }
+        assertEquals(1, rasters.size());
+        assertEquals(misses + 1, metrics.get(PipelineMetrics.Counter.CACHE_MISSES));
+        
+        // A reused raster holds nothing of the previous symbol
+        BufferedImage reused = pooled.renderMatrix(matrices.get(1));
+        BufferedImage fresh = unpooled.renderMatrix(matrices.get(1));
+        assertTrue(rasters.contains(reused));
+        for (int y = 0; y < fresh.getHeight(); y++) {
+            for (int x = 0; x < fresh.getWidth(); x++) {
+                assertEquals(fresh.getRGB(x, y), reused.getRGB(x, y));
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,16 +1,44 @@
 package com.textqr.converter.core;
 
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.FormatException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
 import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.FrameFormat;
 import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRManifest;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRParity;
 import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.ChecksumUtil;
+import com.textqr.converter.util.MappedFile;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.PipelineMetrics;
+import com.textqr.converter.util.TextChunker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,6 +77,32 @@ class QRGeneratorTest {
         assertEquals(largeText.toString(), session.getOriginalText());
     }
     
+    @Test
+    void testCreateSessionFromMappedFile(@TempDir Path tempDir) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("Mapped line ").append(i).append(" with some repeated log content\n");
+        }
+        Path path = tempDir.resolve("input.log");
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+        
+        QRSession expected = qrGenerator.createSession(text.toString(), PayloadCodec.GZIP, QRLayoutOptimizer.Policy.DEFAULT);
+        try (MappedFile file = MappedFile.open(path)) {
+            QRSession session = qrGenerator.createSession(file, PayloadCodec.GZIP, QRLayoutOptimizer.Policy.DEFAULT);
+            
+            assertEquals(expected.getFullChecksum(), session.getFullChecksum());
+            assertEquals(expected.getChunkCount(), session.getChunkCount());
+            assertEquals(Files.size(path), session.getTotalSize());
+            
+            List<String> data = new ArrayList<>();
+            for (QRChunk chunk : session.getChunks()) {
+                data.add(chunk.getData());
+            }
+            assertEquals(text.toString(), TextChunker.reconstructText(data, PayloadCodec.GZIP));
+            assertEquals(text.toString(), session.getOriginalText());
+        }
+    }
+    
     @Test
     void testGenerateQRCode() throws WriterException {
         String data = "Test QR Code Data";
@@ -97,6 +151,28 @@ class QRGeneratorTest {
         assertTrue(composite.getHeight() > 400); // At least 2 QR codes tall
     }
     
+    @Test
+    void testComposeMatricesMatchesCompositeOfRenderedImages() throws WriterException {
+        List<QRMatrix> matrices = new ArrayList<>();
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            QRMatrix matrix = qrGenerator.encodeMatrix("Tile " + i);
+            matrices.add(matrix);
+            images.add(qrGenerator.renderMatrix(matrix));
+        }
+        
+        BufferedImage fromImages = qrGenerator.createCompositeImage(images, 2);
+        BufferedImage fromMatrices = qrGenerator.composeMatrices(matrices, 2);
+        
+        assertEquals(fromImages.getWidth(), fromMatrices.getWidth());
+        assertEquals(fromImages.getHeight(), fromMatrices.getHeight());
+        for (int y = 0; y < fromImages.getHeight(); y += 3) {
+            for (int x = 0; x < fromImages.getWidth(); x += 3) {
+                assertEquals(fromImages.getRGB(x, y), fromMatrices.getRGB(x, y));
+            }
+        }
+    }
+    
     @Test
     void testEmptyTextHandling() {
         String emptyText = "";
@@ -115,4 +191,216 @@ class QRGeneratorTest {
         
         assertTrue(compressed.getChunkCount() <= uncompressed.getChunkCount());
     }
+    
+    @Test
+    void testEncodeMatrixKeepsOneBitPerModule() throws WriterException {
+        QRChunk chunk = new QRChunk(1, 1, "Test Data", "checksum123", "session123");
+        QRMatrix matrix = qrGenerator.encodeMatrix(chunk);
+        
+        int dimension = matrix.getDimension();
+        assertEquals(0, (dimension - 17) % 4); // Valid QR dimension: 17 + 4 * version
+        assertTrue(matrix.getMemoryFootprint() < 2048);
+    }
+    
+    @Test
+    void testRenderMatrixScalesByWholeModules() throws WriterException {
+        QRMatrix matrix = qrGenerator.encodeMatrix("Module scale");
+        
+        BufferedImage image = qrGenerator.renderMatrix(matrix, 4);
+        
+        assertEquals((matrix.getDimension() + 2) * 4 + 40, image.getWidth());
+        assertEquals(image.getWidth(), image.getHeight());
+        assertThrows(IllegalArgumentException.class, () -> qrGenerator.renderMatrix(matrix, 0));
+    }
+    
+    @Test
+    void testRenderedMatrixDecodesBack() throws Exception {
+        QRChunk chunk = new QRChunk(3, 7, "SGVsbG8gV29ybGQ=", "checksum123", "session123");
+        BufferedImage image = qrGenerator.renderMatrix(qrGenerator.encodeMatrix(chunk));
+        
+        assertEquals(chunk.toJsonString(), decode(image));
+    }
+    
+    @Test
+    void testStructuredAppendSymbolsReassembleNatively() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            text.append("Structured append line ").append(i).append('\n');
+        }
+        QRSession session = qrGenerator.createSession(text.toString(), false, structuredAppendPolicy());
+        
+        assertEquals(FrameFormat.STRUCTURED_APPEND, session.getLayout().getFrameFormat());
+        assertTrue(session.getChunkCount() > 1);
+        
+        StringBuilder reassembled = new StringBuilder();
+        for (QRChunk chunk : session.getChunks()) {
+            Result result = decodeResult(qrGenerator.renderMatrix(qrGenerator.encodeMatrix(session, chunk)));
+            int sequence = (Integer) result.getResultMetadata().get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE);
+            int parity = (Integer) result.getResultMetadata().get(ResultMetadataType.STRUCTURED_APPEND_PARITY);
+            
+            assertEquals(chunk.getSequenceNumber() - 1, sequence >> 4);
+            assertEquals(session.getChunkCount() - 1, sequence & 0x0F);
+            assertEquals(session.getStructuredAppendParity(), parity);
+            reassembled.append(result.getText());
+        }
+        
+        assertEquals(text.toString(), TextChunker.reconstructText(List.of(reassembled.toString()), false));
+    }
+    
+    @Test
+    void testStructuredAppendFallsBackToCompactFrames() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Large session line ").append(i).append('\n');
+        }
+        QRSession session = qrGenerator.createSession(text.toString(), false, structuredAppendPolicy());
+        
+        assertEquals(FrameFormat.COMPACT, session.getLayout().getFrameFormat());
+        assertTrue(session.getChunkCount() > 16);
+        
+        QRChunk chunk = session.getChunks().get(1);
+        QRChunk parsed = QRChunk.fromCompactString(decode(qrGenerator.renderMatrix(qrGenerator.encodeMatrix(session, chunk))));
+        assertEquals(chunk.getSequenceNumber(), parsed.getSequenceNumber());
+        assertEquals(chunk.getTotalChunks(), parsed.getTotalChunks());
+        assertEquals(chunk.getData(), parsed.getData());
+        assertTrue(session.getSessionId().startsWith(parsed.getSessionId()));
+    }
+    
+    @Test
+    void testManifestSymbolsDecodeAndVerifyChunks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Manifest line ").append(i).append('\n');
+        }
+        QRSession session = qrGenerator.createSession(text.toString(), false, structuredAppendPolicy());
+        
+        List<String> frames = new ArrayList<>();
+        for (QRMatrix matrix : qrGenerator.encodeManifest(session)) {
+            frames.add(decode(qrGenerator.renderMatrix(matrix)));
+        }
+        QRManifest manifest = QRManifest.parse(frames);
+        
+        assertEquals(session.getSessionId(), manifest.getSessionId());
+        assertEquals(session.getChunkCount(), manifest.getChunkCount());
+        assertTrue(manifest.verifyText(text.toString()));
+        for (QRChunk chunk : session.getChunks()) {
+            assertTrue(manifest.verifyChunk(chunk));
+        }
+    }
+    
+    @Test
+    void testConcurrentEncodingMatchesSequentialOutput() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 800; i++) {
+            text.append("Concurrent line ").append(i).append('\n');
+        }
+        QRSession session = qrGenerator.createSession(text.toString(), false);
+        List<QRChunk> chunks = session.getChunks();
+        
+        List<int[]> expected = new ArrayList<>();
+        for (QRChunk chunk : chunks) {
+            expected.add(pixels(qrGenerator.renderMatrix(qrGenerator.encodeMatrix(session, chunk))));
+        }
+        
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int round = 0; round < threads; round++) {
+                for (QRChunk chunk : chunks) {
+                    futures.add(pool.submit(() -> pixels(qrGenerator.renderMatrix(qrGenerator.encodeMatrix(session, chunk)))));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertArrayEquals(expected.get(i % chunks.size()), futures.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    void testDeltaSessionSendsFewerChunksAndPatchesBack() {
+        StringBuilder base = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            base.append("Delta line ").append(i).append(" value=").append(i * 17).append('\n');
+        }
+        String target = base + "Appended line after the first transfer\n";
+        byte[] baseBytes = base.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] targetBytes = target.getBytes(StandardCharsets.UTF_8);
+        
+        QRSession full = qrGenerator.createSession(target, false);
+        long inputBytes = PipelineMetrics.getInstance().get(PipelineMetrics.Counter.INPUT_BYTES);
+        QRSession delta = qrGenerator.createDeltaSession(baseBytes, targetBytes, true, QRLayoutOptimizer.Policy.DEFAULT);
+        assertTrue(delta.getChunkCount() < full.getChunkCount());
+        assertEquals(targetBytes.length, delta.getTotalSize());
+        assertEquals(full.getFullChecksum(), delta.getFullChecksum());
+        
+        // Input is counted where it is read; the session records its base for the metadata
+        assertEquals(inputBytes, PipelineMetrics.getInstance().get(PipelineMetrics.Counter.INPUT_BYTES));
+        assertEquals(baseBytes.length, delta.getDeltaBaseSize());
+        assertEquals(ChecksumUtil.calculateSHA256(baseBytes), delta.getDeltaBaseChecksum());
+        assertEquals(-1, full.getDeltaBaseSize());
+        
+        List<String> payload = new ArrayList<>();
+        for (QRChunk chunk : delta.getChunks()) {
+            payload.add(chunk.getData());
+        }
+        assertArrayEquals(targetBytes, TextChunker.reconstructDelta(payload, true, baseBytes));
+        
+        // The manifest marks the payload as a delta, so a receiver knows to patch its base
+        PayloadCodec codec = QRManifest.parse(QRManifest.of(delta).toFrameStrings(1000)).getCodec();
+        assertEquals(PayloadCodec.DELTA_GZIP, codec);
+        assertArrayEquals(targetBytes, TextChunker.reconstruct(payload, codec, baseBytes));
+        assertThrows(IllegalArgumentException.class, () -> TextChunker.reconstruct(payload, codec, null));
+        assertThrows(IllegalStateException.class, () -> TextChunker.reconstructText(payload, codec));
+    }
+    
+    @Test
+    void testParitySymbolsDecodeBackToParityFrames() throws Exception {
+        QRSession session = qrGenerator.createSession("Parity symbol line\n".repeat(400), false,
+            structuredAppendPolicy());
+        List<QRMatrix> symbols = qrGenerator.encodeParity(session, 3, 1);
+        assertEquals((session.getChunkCount() + 2) / 3, symbols.size());
+        
+        String frame = decode(qrGenerator.renderMatrix(symbols.get(0)));
+        assertTrue(QRParity.isParityFrame(frame));
+        assertEquals(3, QRParity.parse(frame).getDataShards());
+    }
+    
+    @Test
+    void testExportChunksWritesOnlyListedSequences(@TempDir Path tempDir) throws Exception {
+        QRSession session = qrGenerator.createSession("Re-send line\n".repeat(600), false,
+            new QRLayoutOptimizer.Policy(ErrorCorrectionLevel.M, 10, QRLayoutOptimizer.Objective.MIN_SYMBOLS,
+                FrameFormat.COMPACT));
+        assertTrue(session.getChunkCount() > 5);
+        
+        List<File> files = qrGenerator.exportChunks(session, Arrays.asList(2, 4, 5), tempDir.toFile());
+        assertEquals(3, files.size());
+        assertEquals(3, tempDir.toFile().list().length);
+        assertEquals(QRGenerator.chunkFileName(session, 4), files.get(1).getName());
+        
+        QRChunk fourth = session.getChunks().get(3);
+        assertEquals(fourth.toFrameString(session.getLayout().getFrameFormat()), decode(ImageIO.read(files.get(1))));
+        assertThrows(IllegalArgumentException.class,
+            () -> qrGenerator.encodeMatrices(session, Arrays.asList(session.getChunkCount() + 1)));
+    }
+    
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+    
+    private static QRLayoutOptimizer.Policy structuredAppendPolicy() {
+        return new QRLayoutOptimizer.Policy(ErrorCorrectionLevel.M, 40,
+            QRLayoutOptimizer.Objective.MIN_SYMBOLS, FrameFormat.STRUCTURED_APPEND);
+    }
+    
+    private static String decode(BufferedImage image) throws NotFoundException, ChecksumException, FormatException {
+        return decodeResult(image).getText();
+    }
+    
+    private static Result decodeResult(BufferedImage image) throws NotFoundException, ChecksumException, FormatException {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        return new QRCodeReader().decode(bitmap);
+    }
 }
\ No newline at end of file
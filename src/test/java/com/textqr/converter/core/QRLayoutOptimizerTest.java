@@ -0,0 +1,73 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRLayout;
+import com.textqr.converter.model.QRSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRLayoutOptimizerTest {
+    
+    private final QRLayoutOptimizer optimizer = new QRLayoutOptimizer();
+    
+    @Test
+    void testSmallPayloadUsesSingleSmallSymbol() {
+        QRLayout layout = optimizer.optimize(40, QRLayoutOptimizer.Policy.DEFAULT);
+        
+        assertEquals(1, layout.getChunkCount());
+        assertEquals(ErrorCorrectionLevel.H, layout.getErrorCorrection());
+        assertTrue(layout.getVersion() < 40);
+    }
+    
+    @Test
+    void testLowerMinimumErrorCorrectionNeverNeedsMoreSymbols() {
+        int payloadLength = 50_000;
+        QRLayout strict = optimizer.optimize(payloadLength, QRLayoutOptimizer.Policy.DEFAULT);
+        QRLayout relaxed = optimizer.optimize(payloadLength,
+            new QRLayoutOptimizer.Policy(ErrorCorrectionLevel.L, 40, QRLayoutOptimizer.Objective.MIN_SYMBOLS));
+        
+        assertTrue(relaxed.getChunkCount() <= strict.getChunkCount());
+        assertTrue(relaxed.getChunkCount() < strict.getChunkCount() / 2);
+    }
+    
+    @Test
+    void testMaxVersionIsRespected() {
+        QRLayout layout = optimizer.optimize(5_000,
+            new QRLayoutOptimizer.Policy(ErrorCorrectionLevel.M, 10, QRLayoutOptimizer.Objective.MIN_SCAN_TIME));
+        
+        assertTrue(layout.getVersion() <= 10);
+        assertTrue(layout.getErrorCorrection().ordinal() >= ErrorCorrectionLevel.M.ordinal());
+    }
+    
+    @Test
+    void testChunksAreBalancedAndFitChosenVersion() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("2024-01-01 12:00:00.000 INFO  worker-").append(i).append(" processed request\n");
+        }
+        
+        QRGenerator generator = new QRGenerator();
+        QRSession session = generator.createSession(text.toString(), false);
+        List<QRChunk> chunks = session.getChunks();
+        
+        assertEquals(session.getLayout().getChunkCount(), chunks.size());
+        int first = chunks.get(0).getData().length();
+        int last = chunks.get(chunks.size() - 1).getData().length();
+        assertTrue(first - last < first / chunks.size() + 4);
+        
+        // Every chunk must encode at exactly the planned version
+        for (QRChunk chunk : chunks) {
+            assertNotNull(generator.encodeMatrix(session, chunk));
+        }
+    }
+    
+    @Test
+    void testRejectsInvalidVersionPolicy() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new QRLayoutOptimizer.Policy(ErrorCorrectionLevel.H, 41, QRLayoutOptimizer.Objective.MIN_SYMBOLS));
+    }
+}
\ No newline at end of file
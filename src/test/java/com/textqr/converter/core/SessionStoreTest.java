@@ -0,0 +1,124 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRMatrix;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.TextChunker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final QRGenerator qrGenerator = new QRGenerator();
+    
+    private static void assertSameMatrix(QRMatrix expected, QRMatrix actual) {
+        assertEquals(expected.getDimension(), actual.getDimension());
+        assertArrayEquals(expected.getBits(), actual.getBits());
+    }
+    
+    @Test
+    void testReopensSessionWithRandomAccessToChunks() throws Exception {
+        String text = TestSessions.text(300);
+        QRSession session = TestSessions.create(text, ErrorCorrectionLevel.M, 6, PayloadCodec.GZIP);
+        SessionStore store = new SessionStore(tempDir);
+        store.save(session, qrGenerator);
+        assertEquals(Collections.singletonList(session.getSessionId()), store.listSessions());
+        
+        try (SessionStore.StoredSession stored = store.open(session.getSessionId())) {
+            assertTrue(stored.isComplete());
+            assertEquals(session.getChunkCount(), stored.getChunkCount());
+            assertEquals(session.getLayout().toString(), stored.getLayout().toString());
+            assertEquals(qrGenerator.encodeManifest(session).size(), stored.getManifest().size());
+            
+            // Out of order, straight to the requested sequence numbers
+            for (int sequence : new int[] {session.getChunkCount(), 1, session.getChunkCount() / 2}) {
+                QRChunk chunk = session.getChunks().get(sequence - 1);
+                assertEquals(chunk.getData(), stored.getChunk(sequence).getData());
+                assertEquals(chunk.getChecksum(), stored.getChunk(sequence).getChecksum());
+                assertSameMatrix(qrGenerator.encodeMatrix(session, chunk), stored.getMatrix(sequence));
+            }
+            assertThrows(IllegalArgumentException.class, () -> stored.getChunk(session.getChunkCount() + 1));
+            
+            QRSession restored = stored.toSession();
+            assertEquals(session.getSessionId(), restored.getSessionId());
+            assertEquals(session.getFullChecksum(), restored.getFullChecksum());
+            List<String> payloads = new ArrayList<>();
+            for (QRChunk chunk : restored.getChunks()) {
+                payloads.add(chunk.getData());
+            }
+            assertEquals(text, TextChunker.reconstructText(payloads, restored.getCodec()));
+        }
+    }
+    
+    @Test
+    void testInterruptedSaveResumesAfterLastCompleteRecord() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.M, 6, PayloadCodec.GZIP);
+        SessionStore store = new SessionStore(tempDir);
+        store.save(session, qrGenerator);
+        
+        // Simulate a crash: only three chunks were committed and a torn record follows them
+        Path index = tempDir.resolve(session.getSessionId() + ".tqi");
+        Path data = tempDir.resolve(session.getSessionId() + SessionStore.DATA_EXTENSION);
+        try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel dataChannel = FileChannel.open(data, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer fourth = ByteBuffer.allocate(Long.BYTES);
+            indexChannel.read(fourth, 16 + 3 * Long.BYTES);
+            long committedEnd = fourth.flip().getLong();
+            indexChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 3), 4);
+            indexChannel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, committedEnd), 8);
+            dataChannel.truncate(committedEnd + 10);
+        }
+        
+        try (SessionStore.StoredSession partial = store.open(session.getSessionId())) {
+            assertFalse(partial.isComplete());
+            assertEquals(3, partial.getStoredChunkCount());
+        }
+        
+        store.save(session, qrGenerator);
+        try (SessionStore.StoredSession stored = store.open(session.getSessionId())) {
+            assertTrue(stored.isComplete());
+            for (QRChunk chunk : session.getChunks()) {
+                assertEquals(chunk.getData(), stored.getChunk(chunk.getSequenceNumber()).getData());
+            }
+        }
+    }
+    
+    @Test
+    void testSavesAlreadyEncodedMatricesAsGiven() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.M, 6, PayloadCodec.GZIP);
+        List<QRMatrix> matrices = new ArrayList<>();
+        for (QRChunk chunk : session.getChunks()) {
+            matrices.add(qrGenerator.encodeMatrix(session, chunk));
+        }
+        // A symbol the caller replaced, e.g. one re-encoded after failing verification
+        QRChunk first = session.getChunks().get(0);
+        matrices.set(0, qrGenerator.encodeMatrix(session, first, ErrorCorrectionLevel.H));
+        
+        SessionStore store = new SessionStore(tempDir);
+        store.save(session, qrGenerator.encodeManifest(session), matrices);
+        try (SessionStore.StoredSession stored = store.open(session.getSessionId())) {
+            assertTrue(stored.isComplete());
+            for (QRChunk chunk : session.getChunks()) {
+                assertSameMatrix(matrices.get(chunk.getSequenceNumber() - 1), stored.getMatrix(chunk.getSequenceNumber()));
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> store.save(session, qrGenerator.encodeManifest(session), matrices.subList(1, matrices.size())));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.textqr.converter.model.QRMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredAppendEncoderTest {
+    
+    @Test
+    void testByteSegmentMatchesZXingEncoder() throws Exception {
+        // Single block, multiple blocks, two block groups and version information
+        int[][] cases = {{1, 0}, {5, 1}, {7, 2}, {15, 3}, {27, 1}};
+        for (int[] c : cases) {
+            Version version = Version.getVersionForNumber(c[0]);
+            ErrorCorrectionLevel ecLevel = ErrorCorrectionLevel.values()[c[1]];
+            String content = payload(version.getVersionNumber() * 6);
+            
+            ByteMatrix expected = Encoder.encode(content, ecLevel, Map.of(EncodeHintType.QR_VERSION, c[0]))
+                .getMatrix();
+            QRMatrix actual = StructuredAppendEncoder.encodeByteSegment(new BitArray(), content, ecLevel, version);
+            
+            assertEquals(expected.getWidth(), actual.getDimension());
+            for (int y = 0; y < actual.getDimension(); y++) {
+                for (int x = 0; x < actual.getDimension(); x++) {
+                    assertEquals(expected.get(x, y) == 1, actual.get(x, y),
+                        "version " + c[0] + " " + ecLevel + " module " + x + "," + y);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testSymbolsDecodeWithStructuredAppendMetadata() throws Exception {
+        for (int version : new int[] {2, 8, 20}) {
+            String content = payload(version * 10);
+            QRMatrix matrix = StructuredAppendEncoder.encode(
+                content, ErrorCorrectionLevel.M, Version.getVersionForNumber(version), 2, 5, 0xA7);
+            
+            Result result = decode(matrix);
+            int sequence = (Integer) result.getResultMetadata().get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE);
+            assertEquals(content, result.getText());
+            assertEquals(2, sequence >> 4);
+            assertEquals(4, sequence & 0x0F);
+            assertEquals(0xA7, result.getResultMetadata().get(ResultMetadataType.STRUCTURED_APPEND_PARITY));
+        }
+    }
+    
+    @Test
+    void testRejectsInvalidPositionAndOversizedContent() {
+        Version version = Version.getVersionForNumber(1);
+        assertThrows(WriterException.class,
+            () -> StructuredAppendEncoder.encode("a", ErrorCorrectionLevel.L, version, 0, 17, 0));
+        assertThrows(WriterException.class,
+            () -> StructuredAppendEncoder.encode("a", ErrorCorrectionLevel.L, version, 3, 3, 0));
+        assertThrows(WriterException.class,
+            () -> StructuredAppendEncoder.encode(payload(20), ErrorCorrectionLevel.H, version, 0, 1, 0));
+    }
+    
+    private static String payload(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append("structured append é~\n".charAt(i % 21));
+        }
+        return builder.toString();
+    }
+    
+    private static Result decode(QRMatrix matrix) throws Exception {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(
+            new BufferedImageLuminanceSource(new QRGenerator().renderMatrix(matrix))));
+        return new QRCodeReader().decode(bitmap);
+    }
+}
\ No newline at end of file
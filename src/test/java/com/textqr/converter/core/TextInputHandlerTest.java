@@ -0,0 +1,95 @@
+package com.textqr.converter.core;
+
+import com.textqr.converter.util.MappedFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextInputHandlerTest {
+    
+    private static final String[] SAMPLES = {
+        "",
+        "single line",
+        "a\nb\nc",
+        "trailing newline\n",
+        "\n\n",
+        "a\n\n\nb\n\n",
+        "한글 텍스트 テキスト 🎉",
+        "lone surrogate \uD800 here",
+        "mixed é\r\n\0end"
+    };
+    
+    private final TextInputHandler handler = new TextInputHandler();
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testStatisticsMatchReferenceCounts() {
+        for (String sample : SAMPLES) {
+            TextInputHandler.InputStatistics stats = handler.analyzeInput(sample);
+            
+            assertEquals(sample.length(), stats.getTotalCharacters(), sample);
+            assertEquals(sample.split("\n").length, stats.getTotalLines(), sample);
+            assertEquals(sample.getBytes(StandardCharsets.UTF_8).length, stats.getTotalBytes(), sample);
+            assertEquals(!sample.matches("\\p{ASCII}*"), stats.hasNonAscii(), sample);
+        }
+    }
+    
+    @Test
+    void testMappedFileStatisticsMatchDecodedText() throws IOException {
+        for (String sample : SAMPLES) {
+            Path file = tempDir.resolve("sample.txt");
+            Files.write(file, sample.getBytes(StandardCharsets.UTF_8));
+            TextInputHandler.InputStatistics expected = handler.analyzeInput(
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            
+            try (MappedFile mapped = handler.mapFile(file.toString())) {
+                TextInputHandler.InputStatistics stats = handler.analyzeInput(mapped);
+                assertEquals(expected.getTotalCharacters(), stats.getTotalCharacters(), sample);
+                assertEquals(expected.getTotalLines(), stats.getTotalLines(), sample);
+                assertEquals(expected.getTotalBytes(), stats.getTotalBytes(), sample);
+                assertEquals(expected.hasNonAscii(), stats.hasNonAscii(), sample);
+                assertEquals(expected.getEstimatedQRCount(), stats.getEstimatedQRCount(), sample);
+            }
+        }
+    }
+    
+    @Test
+    void testEstimatedQRCountTracksInputSize() {
+        TextInputHandler.InputStatistics small = handler.analyzeInput("hello");
+        TextInputHandler.InputStatistics large = handler.analyzeInput("x".repeat(100_000));
+        
+        assertEquals(1, small.getEstimatedQRCount());
+        assertTrue(large.getEstimatedQRCount() > 100);
+    }
+    
+    @Test
+    void testReadLinesPagesThroughReader() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        
+        BufferedReader reader = new BufferedReader(new StringReader(text.toString()));
+        List<String> first = handler.readLines(reader, 10);
+        List<String> second = handler.readLines(reader, 10);
+        List<String> last = handler.readLines(reader, 10);
+        
+        assertEquals(10, first.size());
+        assertEquals("line 0", first.get(0));
+        assertEquals("line 10", second.get(0));
+        assertEquals(5, last.size());
+        assertEquals("line 24", last.get(4));
+        assertTrue(handler.readLines(reader, 10).isEmpty());
+    }
+}
\ No newline at end of file
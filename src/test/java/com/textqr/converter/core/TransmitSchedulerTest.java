@@ -0,0 +1,177 @@
+package com.textqr.converter.core;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.model.QRChunk;
+import com.textqr.converter.model.QRSession;
+import com.textqr.converter.util.PayloadCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransmitSchedulerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final QRGenerator qrGenerator = new QRGenerator();
+    
+    @Test
+    void testShowsUnconfirmedChunksLeastShownFirst() {
+        QRSession session = TestSessions.create(TestSessions.text(20), ErrorCorrectionLevel.M, 3, PayloadCodec.PLAIN);
+        int count = session.getChunkCount();
+        assertTrue(count > 6);
+        TransmitScheduler scheduler = new TransmitScheduler(session, 5, 30);
+        
+        for (int i = 0; i < count; i++) {
+            QRChunk chunk = scheduler.nextChunk();
+            assertEquals(i + 1, chunk.getSequenceNumber());
+            scheduler.frameShown(chunk);
+        }
+        
+        assertEquals(3, scheduler.acknowledge(Arrays.asList(2, 3, 5)));
+        assertEquals(0, scheduler.acknowledge(Collections.singletonList(3)));
+        
+        // The second round skips confirmed chunks
+        Set<Integer> secondRound = new HashSet<>();
+        for (int i = 0; i < count - 3; i++) {
+            QRChunk chunk = scheduler.nextChunk();
+            scheduler.frameShown(chunk);
+            assertTrue(secondRound.add(chunk.getSequenceNumber()));
+        }
+        assertFalse(secondRound.contains(2) || secondRound.contains(3) || secondRound.contains(5));
+        
+        List<Integer> all = scheduler.getUnacknowledged();
+        scheduler.acknowledge(all);
+        assertTrue(scheduler.isComplete());
+        assertNull(scheduler.nextChunk());
+    }
+    
+    @Test
+    void testFrameRateSettlesNearReceiverCapacity() {
+        QRSession session = TestSessions.create(TestSessions.text(400), ErrorCorrectionLevel.M, 3, PayloadCodec.PLAIN);
+        assertTrue(session.getChunkCount() > 200);
+        TransmitScheduler scheduler = new TransmitScheduler(session, 5, 60);
+        
+        // The receiver's camera captures at most 15 frames per second; frames shown in between are missed
+        long captureIntervalMillis = 1000 / 15;
+        long now = 0;
+        long lastCapture = -captureIntervalMillis;
+        while (!scheduler.isComplete() && scheduler.getFramesShown() < 10 * session.getChunkCount()) {
+            QRChunk chunk = scheduler.nextChunk();
+            scheduler.frameShown(chunk);
+            if (now - lastCapture >= captureIntervalMillis) {
+                lastCapture = now;
+                scheduler.acknowledge(Collections.singletonList(chunk.getSequenceNumber()));
+            }
+            now += scheduler.getFrameIntervalMillis();
+        }
+        
+        assertTrue(scheduler.isComplete());
+        assertTrue(scheduler.getFrameRate() >= 10 && scheduler.getFrameRate() <= 20,
+            "Frame rate " + scheduler.getFrameRate());
+        assertTrue(scheduler.getGoodput() > 0.7, "Goodput " + scheduler.getGoodput());
+        assertEquals(ErrorCorrectionLevel.M, scheduler.getErrorCorrection());
+    }
+    
+    @Test
+    void testRaisesErrorCorrectionWhenSlowestRateStillLosesFrames() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(40), ErrorCorrectionLevel.L, 3, PayloadCodec.PLAIN);
+        assertEquals(ErrorCorrectionLevel.L, session.getLayout().getErrorCorrection());
+        TransmitScheduler scheduler = new TransmitScheduler(session, 5, 30);
+        
+        // A blurry receiver that only reads symbols with at least quartile error correction
+        while (!scheduler.isComplete() && scheduler.getFramesShown() < 20 * session.getChunkCount()) {
+            QRChunk chunk = scheduler.nextChunk();
+            ErrorCorrectionLevel level = scheduler.getErrorCorrection();
+            assertNotNull(qrGenerator.encodeMatrix(session, chunk, level));
+            scheduler.frameShown(chunk);
+            if (level.ordinal() >= ErrorCorrectionLevel.Q.ordinal()) {
+                scheduler.acknowledge(Collections.singletonList(chunk.getSequenceNumber()));
+            }
+        }
+        
+        assertTrue(scheduler.isComplete());
+        assertTrue(scheduler.getErrorCorrection().ordinal() >= ErrorCorrectionLevel.Q.ordinal());
+    }
+    
+    @Test
+    void testNeverRaisesErrorCorrectionBeyondWhatChunksFit() throws Exception {
+        // Incompressible text in a few largest-version symbols at level L leaves no room for M
+        QRSession session = TestSessions.create(TestSessions.text(2000), ErrorCorrectionLevel.L, 40, PayloadCodec.PLAIN);
+        assertEquals(40, session.getLayout().getVersion());
+        assertEquals(ErrorCorrectionLevel.L, QRLayoutOptimizer.maxErrorCorrection(session.getLayout()));
+        assertThrows(WriterException.class,
+            () -> qrGenerator.encodeMatrix(session, session.getChunks().get(0), ErrorCorrectionLevel.M));
+        
+        // A receiver that confirms nothing drives the rate to its floor
+        TransmitScheduler scheduler = new TransmitScheduler(session, 5, 30);
+        for (int i = 0; i < 20 * TransmitScheduler.DECISION_WINDOW; i++) {
+            scheduler.frameShown(scheduler.nextChunk());
+        }
+        assertEquals(5, scheduler.getFrameRate());
+        assertEquals(ErrorCorrectionLevel.L, scheduler.getErrorCorrection());
+        assertNotNull(qrGenerator.encodeMatrix(session, scheduler.nextChunk(), scheduler.getErrorCorrection()));
+    }
+    
+    @Test
+    void testTransfersToFakeReceiverOverLoopback() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(15), ErrorCorrectionLevel.M, 3, PayloadCodec.PLAIN);
+        TransmitScheduler scheduler = new TransmitScheduler(session, 20, 100);
+        
+        try (AckChannel.Loopback channel = new AckChannel.Loopback(0);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), channel.getPort());
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            // The fake receiver misses every third frame it is shown
+            int[] shown = new int[1];
+            boolean complete = scheduler.run(qrGenerator, channel, (chunk, matrix) -> {
+                assertTrue(matrix.getDimension() >= 21);
+                if (++shown[0] % 3 != 0) {
+                    writer.write(AckChannel.format(session, Collections.singletonList(chunk.getSequenceNumber())) + "\n");
+                    writer.flush();
+                }
+            }, 30_000);
+            
+            assertTrue(complete);
+            assertTrue(scheduler.getUnacknowledged().isEmpty());
+        }
+    }
+    
+    @Test
+    void testFileDropReadsOnlyCompleteLines() throws Exception {
+        QRSession session = TestSessions.create(TestSessions.text(15), ErrorCorrectionLevel.M, 3, PayloadCodec.PLAIN);
+        Path ackFile = tempDir.resolve("acks.txt");
+        
+        try (AckChannel channel = new AckChannel.FileDrop(ackFile)) {
+            assertTrue(channel.poll().isEmpty());
+            
+            Files.write(ackFile, (AckChannel.format(session, Arrays.asList(1, 2, 3)) + "\nACK 000").getBytes(StandardCharsets.UTF_8));
+            List<String> lines = channel.poll();
+            assertEquals(1, lines.size());
+            assertEquals(Arrays.asList(1, 2, 3), AckChannel.parse(lines.get(0), session));
+            
+            Files.write(ackFile, "00000 1\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            lines = channel.poll();
+            assertEquals(1, lines.size());
+            // Reports for another session are ignored
+            assertEquals("ACK 00000000 1", lines.get(0));
+            assertTrue(AckChannel.parse(lines.get(0), session).isEmpty());
+        }
+    }
+}
\ No newline at end of file
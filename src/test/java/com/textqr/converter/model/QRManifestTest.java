@@ -0,0 +1,69 @@
+package com.textqr.converter.model;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.util.PayloadCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRManifestTest {
+    
+    @Test
+    void testFramesRoundTripInAnyOrder() {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.H, 5, PayloadCodec.PLAIN);
+        QRManifest manifest = QRManifest.of(session);
+        
+        List<String> frames = new ArrayList<>(manifest.toFrameStrings(300));
+        assertTrue(frames.size() > 1);
+        for (String frame : frames) {
+            assertTrue(frame.length() <= 300);
+            assertTrue(QRManifest.isManifestFrame(frame));
+        }
+        
+        Collections.reverse(frames);
+        QRManifest parsed = QRManifest.parse(frames);
+        
+        assertEquals(session.getSessionId(), parsed.getSessionId());
+        assertEquals(session.getTotalSize(), parsed.getTotalSize());
+        assertEquals(PayloadCodec.PLAIN, parsed.getCodec());
+        assertEquals(session.getChunkCount(), parsed.getChunkCount());
+        assertEquals(session.getFullChecksum(), parsed.getFullChecksum());
+        for (QRChunk chunk : session.getChunks()) {
+            assertTrue(parsed.verifyChunk(chunk), "chunk " + chunk.getSequenceNumber());
+        }
+    }
+    
+    @Test
+    void testDetectsCorruptAndMissingChunks() {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.H, 5, PayloadCodec.PLAIN);
+        QRManifest manifest = QRManifest.parse(QRManifest.of(session).toFrameStrings(300));
+        
+        QRChunk chunk = session.getChunks().get(2);
+        assertFalse(manifest.verifyChunk(chunk.getSequenceNumber(), chunk.getData() + "A"));
+        assertFalse(manifest.verifyChunk(chunk.getSequenceNumber() + 1, chunk.getData()));
+        assertFalse(manifest.verifyChunk(0, chunk.getData()));
+        
+        List<Integer> received = new ArrayList<>();
+        for (int sequence = 1; sequence <= session.getChunkCount(); sequence++) {
+            if (sequence != 2 && sequence != 5) {
+                received.add(sequence);
+            }
+        }
+        assertEquals(Arrays.asList(2, 5), manifest.getMissingSequenceNumbers(received));
+    }
+    
+    @Test
+    void testParseRejectsIncompleteManifest() {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.H, 5, PayloadCodec.PLAIN);
+        List<String> frames = QRManifest.of(session).toFrameStrings(300);
+        
+        assertThrows(IllegalArgumentException.class, () -> QRManifest.parse(frames.subList(1, frames.size())));
+        assertThrows(IllegalArgumentException.class, () -> QRManifest.parse(Collections.singletonList("TQ:1/1:x")));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.textqr.converter.model;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.textqr.converter.TestSessions;
+import com.textqr.converter.util.PayloadCodec;
+import com.textqr.converter.util.TextChunker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRParityTest {
+    
+    private static List<String> payloads(QRSession session) {
+        List<String> payloads = new ArrayList<>();
+        for (QRChunk chunk : session.getChunks()) {
+            payloads.add(chunk.getData());
+        }
+        return payloads;
+    }
+    
+    @Test
+    void testRecoversLostChunksFromParsedFrames() {
+        String text = TestSessions.text(300);
+        QRSession session = TestSessions.create(text, ErrorCorrectionLevel.H, 5, PayloadCodec.GZIP);
+        List<String> expected = payloads(session);
+        assertTrue(expected.size() > 6);
+        
+        List<QRParity> parity = new ArrayList<>();
+        for (QRParity symbol : QRParity.of(session, 4, 2)) {
+            String frame = symbol.toFrameString();
+            assertTrue(QRParity.isParityFrame(frame));
+            parity.add(QRParity.parse(frame));
+        }
+        assertEquals((expected.size() + 3) / 4 * 2, parity.size());
+        
+        // Two chunks from the first group, plus the short final chunk
+        List<String> received = new ArrayList<>(expected);
+        received.set(0, null);
+        received.set(3, null);
+        received.set(received.size() - 1, null);
+        parity.remove(2);
+        
+        List<String> recovered = QRParity.recover(received, parity);
+        assertEquals(expected, recovered);
+        assertEquals(text, TextChunker.reconstructText(recovered, PayloadCodec.GZIP));
+    }
+    
+    @Test
+    void testTooManyLossesInOneGroupFail() {
+        QRSession session = TestSessions.create(TestSessions.text(300), ErrorCorrectionLevel.H, 5, PayloadCodec.GZIP);
+        List<QRParity> parity = QRParity.of(session, 4, 1);
+        
+        List<String> received = payloads(session);
+        received.set(1, null);
+        received.set(2, null);
+        assertThrows(IllegalArgumentException.class, () -> QRParity.recover(received, parity));
+        assertThrows(IllegalArgumentException.class, () -> QRParity.recover(received, new ArrayList<>()));
+    }
+}
\ No newline at end of file
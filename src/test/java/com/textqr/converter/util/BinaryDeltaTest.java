@@ -0,0 +1,82 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryDeltaTest {
+    
+    private static byte[] sample(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append("2024-01-15 10:30:").append(i % 60).append(" INFO worker-").append(i % 7)
+                .append(" processed request ").append(i * 31).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+    
+    @Test
+    void testAppendedLogSendsOnlyTheTail() {
+        byte[] base = sample(0, 5000);
+        byte[] target = concat(base, sample(5000, 5100));
+        
+        byte[] delta = BinaryDelta.compute(base, target);
+        assertTrue(BinaryDelta.isDelta(delta));
+        assertTrue(delta.length < (target.length - base.length) + 1024, "delta was " + delta.length + " bytes");
+        assertArrayEquals(target, BinaryDelta.apply(base, delta));
+    }
+    
+    @Test
+    void testEditsInsertionsAndDeletions() {
+        byte[] base = sample(0, 3000);
+        byte[] target = concat(
+            Arrays.copyOfRange(base, 0, 20_000),
+            "inserted line that shifts everything after it\n".getBytes(StandardCharsets.UTF_8),
+            Arrays.copyOfRange(base, 20_000, 60_000),
+            Arrays.copyOfRange(base, 70_000, base.length)
+        );
+        target[100] ^= 1;
+        
+        byte[] delta = BinaryDelta.compute(base, target);
+        assertTrue(delta.length < target.length / 20, "delta was " + delta.length + " bytes");
+        assertArrayEquals(target, BinaryDelta.apply(base, delta));
+    }
+    
+    @Test
+    void testEmptyAndUnrelatedInputs() {
+        byte[] data = sample(0, 100);
+        assertArrayEquals(data, BinaryDelta.apply(new byte[0], BinaryDelta.compute(new byte[0], data)));
+        assertArrayEquals(new byte[0], BinaryDelta.apply(data, BinaryDelta.compute(data, new byte[0])));
+        
+        byte[] unrelated = "nothing in common".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(unrelated, BinaryDelta.apply(data, BinaryDelta.compute(data, unrelated)));
+    }
+    
+    @Test
+    void testRejectsWrongBase() {
+        byte[] base = sample(0, 1000);
+        byte[] delta = BinaryDelta.compute(base, sample(0, 1100));
+        
+        byte[] otherBase = base.clone();
+        otherBase[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> BinaryDelta.apply(otherBase, delta));
+        assertFalse(BinaryDelta.isDelta(base));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionUtilTest {
+    
+    private static byte[] sample(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("2024-01-15 10:30:").append(i % 60).append(" INFO worker-").append(i % 7)
+                .append(" processed request ").append(i * 31).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    void testParallelOutputIsStandardMultiMemberGzip() throws IOException {
+        byte[] data = sample(20_000);
+        byte[] compressed = CompressionUtil.compressParallel(data, 64 * 1024);
+        
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+        assertArrayEquals(data, CompressionUtil.decompress(compressed));
+        assertArrayEquals(data, CompressionUtil.decompressParallel(compressed));
+    }
+    
+    @Test
+    void testParallelDecompressFallsBackForPlainGzip() {
+        byte[] data = sample(500);
+        assertArrayEquals(data, CompressionUtil.decompressParallel(CompressionUtil.compress(data)));
+    }
+    
+    @Test
+    void testEmptyAndMappedInputs(@TempDir Path tempDir) throws IOException {
+        assertArrayEquals(new byte[0], CompressionUtil.decompressParallel(CompressionUtil.compressParallel(new byte[0])));
+        
+        byte[] data = sample(150_000);
+        Path path = tempDir.resolve("large.log");
+        Files.write(path, data);
+        try (MappedFile file = MappedFile.open(path)) {
+            assertArrayEquals(data, CompressionUtil.decompressParallel(CompressionUtil.compressParallel(file)));
+        }
+    }
+    
+    @Test
+    void testCorruptMemberIsRejected() {
+        byte[] compressed = CompressionUtil.compressParallel(sample(5_000), 16 * 1024);
+        compressed[compressed.length - 12] ^= 0x55;
+        
+        assertThrows(RuntimeException.class, () -> CompressionUtil.decompressParallel(compressed));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.textqr.converter.util;
+
+import com.google.zxing.common.reedsolomon.GenericGF;
+import com.google.zxing.common.reedsolomon.ReedSolomonDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErasureCoderTest {
+    
+    private static byte[][] randomShards(Random random, int count, int length) {
+        byte[][] shards = new byte[count][length];
+        for (byte[] shard : shards) {
+            random.nextBytes(shard);
+        }
+        return shards;
+    }
+    
+    private static byte[][] group(byte[][] data, byte[][] parity) {
+        byte[][] shards = new byte[data.length + parity.length][];
+        System.arraycopy(data, 0, shards, 0, data.length);
+        System.arraycopy(parity, 0, shards, data.length, parity.length);
+        return shards;
+    }
+    
+    @Test
+    void testParityColumnsAreZXingCodewords() throws Exception {
+        Random random = new Random(1);
+        byte[][] data = randomShards(random, 10, 64);
+        byte[][] parity = new ErasureCoder(10, 4).encode(data);
+        
+        ReedSolomonDecoder decoder = new ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+        byte[][] shards = group(data, parity);
+        for (int column = 0; column < 64; column++) {
+            int[] codeword = new int[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                codeword[i] = shards[i][column] & 0xFF;
+            }
+            assertEquals(0, decoder.decodeWithECCount(codeword, 4));
+        }
+    }
+    
+    @Test
+    void testRebuildsAnyMissingShardsUpToParityCount() {
+        Random random = new Random(2);
+        ErasureCoder coder = new ErasureCoder(8, 3);
+        for (int groupSize : new int[] {8, 5, 1}) {
+            byte[][] data = randomShards(random, groupSize, 100);
+            byte[][] expected = group(data, coder.encode(data));
+            
+            for (int round = 0; round < 50; round++) {
+                byte[][] shards = expected.clone();
+                for (int lost = 0; lost < 3; lost++) {
+                    shards[random.nextInt(shards.length)] = null;
+                }
+                coder.reconstruct(shards, 100);
+                for (int i = 0; i < shards.length; i++) {
+                    assertArrayEquals(expected[i], shards[i]);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testRejectsTooManyErasuresAndBadConfigurations() {
+        ErasureCoder coder = new ErasureCoder(4, 2);
+        byte[][] data = randomShards(new Random(3), 4, 16);
+        byte[][] shards = group(data, coder.encode(data));
+        shards[0] = null;
+        shards[2] = null;
+        shards[5] = null;
+        assertThrows(IllegalArgumentException.class, () -> coder.reconstruct(shards, 16));
+        
+        assertThrows(IllegalArgumentException.class, () -> new ErasureCoder(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ErasureCoder(250, 6));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogCompactorTest {
+    
+    private static String sampleJavaLog(int entries) {
+        StringBuilder log = new StringBuilder();
+        long millis = 1_700_000_000_000L;
+        for (int i = 0; i < entries; i++) {
+            millis += 37 + (i % 11);
+            String timestamp = java.time.LocalDateTime.ofEpochSecond(millis / 1000, (int) (millis % 1000) * 1_000_000,
+                java.time.ZoneOffset.UTC).toString().replace('T', ' ');
+            timestamp = (timestamp + ".000").substring(0, 23);
+            log.append(timestamp).append(" INFO  [worker-").append(i % 8).append("] c.t.c.Service - Processed request ")
+                .append(i).append(" in ").append(i % 97).append(" ms\n");
+            if (i % 50 == 0) {
+                log.append(timestamp).append(" ERROR [worker-").append(i % 8).append("] c.t.c.Service - Request failed\n")
+                    .append("java.lang.IllegalStateException: Connection reset\n")
+                    .append("\tat com.textqr.converter.net.Client.read(Client.java:120)\n")
+                    .append("\tat com.textqr.converter.net.Client.call(Client.java:88)\n")
+                    .append("\tat com.textqr.converter.Service.handle(Service.java:42)\n")
+                    .append("\t... 12 more\n");
+            }
+        }
+        return log.toString();
+    }
+    
+    @Test
+    void testRoundTripIsExact() {
+        String[] samples = {
+            "",
+            "\n",
+            "no newline at end",
+            "trailing newline\n",
+            "  double  spaces and\ttabs \r\nwindows line\r\n",
+            "placeholder \u0001 inside\nnext",
+            "2024-02-30 10:00:00.000 invalid date stays literal",
+            "2024-01-01T23:59:59,999 comma fraction\n2024-01-02 00:00:00 no fraction",
+            "unpaired \uD800 surrogate and emoji 🎉",
+            sampleJavaLog(300)
+        };
+        
+        for (String sample : samples) {
+            assertEquals(sample, LogCompactor.expand(LogCompactor.compact(sample)), sample);
+        }
+    }
+    
+    @Test
+    void testByteRoundTripIsExactForInvalidUtf8() {
+        byte[] valid = "2024-01-01 10:00:00.000 caf\u00e9 line 1\r\n".getBytes(StandardCharsets.UTF_8);
+        byte[][] samples = {
+            new byte[0],
+            valid,
+            {'x', ' ', (byte) 0xC3, 0x28, '\r', '\n', 'y', ' ', '1', (byte) 0xFF},
+            {(byte) 0xED, (byte) 0xA0, (byte) 0x80, '\n', 0x01, ' ', '7'}
+        };
+        
+        for (byte[] sample : samples) {
+            assertArrayEquals(sample, LogCompactor.expandBytes(LogCompactor.compact(sample)));
+        }
+        assertEquals(new String(valid, StandardCharsets.UTF_8), LogCompactor.expand(LogCompactor.compact(valid)));
+    }
+    
+    @Test
+    void testCompactionBeatsPlainGzipOnLogs() {
+        String log = sampleJavaLog(2000);
+        
+        byte[] gzipOnly = CompressionUtil.compress(log.getBytes(StandardCharsets.UTF_8));
+        byte[] compacted = PayloadCodec.LOG_GZIP.encode(log);
+        
+        assertTrue(compacted.length < gzipOnly.length,
+            "compacted " + compacted.length + " vs gzip " + gzipOnly.length);
+        assertEquals(log, PayloadCodec.LOG_GZIP.decode(compacted));
+    }
+    
+    @Test
+    void testRejectsForeignStream() {
+        assertThrows(IllegalArgumentException.class, () -> LogCompactor.expand(new byte[] {1, 2, 3, 4, 5}));
+    }
+}
\ No newline at end of file
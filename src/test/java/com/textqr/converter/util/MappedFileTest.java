@@ -0,0 +1,115 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private Path writeSample() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("2024-01-15 10:30:").append(i % 60).append(" INFO 한글 line ").append(i).append('\n');
+        }
+        Path file = tempDir.resolve("sample.log");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    @Test
+    void testWindowsCoverWholeFile() throws IOException {
+        Path path = writeSample();
+        byte[] expected = Files.readAllBytes(path);
+        
+        try (MappedFile file = MappedFile.open(path, 4099)) {
+            assertEquals(expected.length, file.size());
+            assertTrue(file.buffers().size() > 1);
+            assertArrayEquals(expected, file.readAllBytes());
+            
+            try (InputStream in = file.openStream()) {
+                assertArrayEquals(expected, in.readAllBytes());
+            }
+            
+            String text = new String(expected, StandardCharsets.UTF_8);
+            assertEquals(text, file.decode());
+            assertEquals(ChecksumUtil.calculateSHA256(text), ChecksumUtil.calculateSHA256(file));
+        }
+    }
+    
+    @Test
+    void testInvalidUtf8WithCrlfRoundTripsByteExact() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        for (int i = 0; i < 500; i++) {
+            log.writeBytes(("2024-01-15 10:30:" + (10 + i % 50) + ".000 INFO request " + i + "\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+            if (i % 100 == 7) {
+                // A malformed two-byte sequence in the middle of a line
+                log.writeBytes(new byte[] {'b', 'a', 'd', ' ', (byte) 0xC3, 0x28, '\r', '\n'});
+            }
+        }
+        byte[] expected = log.toByteArray();
+        Path path = tempDir.resolve("malformed.log");
+        Files.write(path, expected);
+        
+        try (MappedFile file = MappedFile.open(path, 4099)) {
+            for (PayloadCodec codec : PayloadCodec.values()) {
+                if (codec.isDelta()) {
+                    continue;
+                }
+                assertArrayEquals(expected, codec.decodeBytes(codec.encode(file)), codec.toString());
+                try (InputStream in = file.openStream()) {
+                    assertArrayEquals(expected, codec.decodeBytes(codec.encode(in)), codec.toString());
+                }
+                
+                List<String> chunks = TextChunker.splitPayload(TextChunker.encodePayload(file, codec), 400);
+                byte[] rebuilt = TextChunker.reconstruct(chunks, codec, null);
+                assertEquals(ChecksumUtil.calculateSHA256(file), ChecksumUtil.calculateSHA256(rebuilt), codec.toString());
+            }
+        }
+    }
+    
+    @Test
+    void testPayloadMatchesStringPath() throws IOException {
+        Path path = writeSample();
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        
+        try (MappedFile file = MappedFile.open(path, 4099)) {
+            for (PayloadCodec codec : PayloadCodec.values()) {
+                if (codec.isDelta()) {
+                    // Deltas are computed against a base, not from the file alone
+                    continue;
+                }
+                String payload = TextChunker.encodePayload(file, codec);
+                List<String> chunks = TextChunker.splitPayload(payload, 1000);
+                assertEquals(text, TextChunker.reconstructText(chunks, codec), codec.name());
+            }
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8),
+                Base64.getDecoder().decode(TextChunker.encodePayload(file, PayloadCodec.PLAIN)));
+        }
+    }
+    
+    @Test
+    void testEmptyFile() throws IOException {
+        Path path = tempDir.resolve("empty.txt");
+        Files.createFile(path);
+        
+        try (MappedFile file = MappedFile.open(path)) {
+            assertEquals(0, file.size());
+            assertTrue(file.buffers().isEmpty());
+            assertEquals("", file.decode());
+        }
+    }
+}
\ No newline at end of file
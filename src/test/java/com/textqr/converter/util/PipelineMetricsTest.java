@@ -0,0 +1,74 @@
+package com.textqr.converter.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+    
+    private final PipelineMetrics metrics = PipelineMetrics.getInstance();
+    private byte[] retained;
+    
+    private long allocatedBytes(PipelineMetrics.Stage stage) {
+        JsonObject stages = JsonParser.parseString(metrics.getJson()).getAsJsonObject().getAsJsonObject("stages");
+        return stages.getAsJsonObject(stage.name()).get("allocatedBytes").getAsLong();
+    }
+    
+    @Test
+    void testTimerRecordsStage() {
+        long before = metrics.getStageCount(PipelineMetrics.Stage.HASH);
+        
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.HASH)) {
+            ChecksumUtil.calculateSHA256("timed");
+        }
+        
+        assertEquals(before + 1, metrics.getStageCount(PipelineMetrics.Stage.HASH));
+        assertTrue(metrics.getSummary().contains("HASH"));
+    }
+    
+    @Test
+    void testPipelineStagesAreCounted() {
+        long chunksBefore = metrics.get(PipelineMetrics.Counter.CHUNKS);
+        long compressBefore = metrics.getStageCount(PipelineMetrics.Stage.COMPRESS);
+        
+        TextChunker.chunkText("metrics ".repeat(2000), true, 400);
+        
+        assertTrue(metrics.get(PipelineMetrics.Counter.CHUNKS) > chunksBefore);
+        assertEquals(compressBefore + 1, metrics.getStageCount(PipelineMetrics.Stage.COMPRESS));
+    }
+    
+    @Test
+    void testJsonDumpContainsStagesAndCounters() {
+        JsonObject json = JsonParser.parseString(metrics.getJson()).getAsJsonObject();
+        
+        assertTrue(json.getAsJsonObject("stages").has("ENCODE"));
+        assertTrue(json.getAsJsonObject("counters").has("CHUNKS"));
+    }
+    
+    @Test
+    void testAllocationsAreMeasuredOnceTracked() {
+        metrics.trackAllocations();
+        long before = allocatedBytes(PipelineMetrics.Stage.WRITE);
+        
+        try (PipelineMetrics.Timer ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+            retained = new byte[1 << 20];
+        }
+        
+        assertTrue(allocatedBytes(PipelineMetrics.Stage.WRITE) - before >= retained.length);
+    }
+    
+    @Test
+    void testMBeanRegistrationIsIdempotent() throws MalformedObjectNameException {
+        metrics.registerMBean();
+        metrics.registerMBean();
+        
+        ObjectName name = new ObjectName("com.textqr.converter:type=PipelineMetrics");
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
\ No newline at end of file
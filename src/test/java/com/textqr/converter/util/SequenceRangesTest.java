@@ -0,0 +1,32 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceRangesTest {
+    
+    @Test
+    void testParsesReceiverReports() {
+        assertEquals(Arrays.asList(37, 112, 113, 114, 115, 116, 117, 118),
+            SequenceRanges.parse("37, 112–118", 999));
+        assertEquals(Arrays.asList(1, 2, 3, 5), SequenceRanges.parse("5 1-3,2", 5));
+    }
+    
+    @Test
+    void testRejectsInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> SequenceRanges.parse("0", 10));
+        assertThrows(IllegalArgumentException.class, () -> SequenceRanges.parse("8-11", 10));
+        assertThrows(IllegalArgumentException.class, () -> SequenceRanges.parse("9-3", 10));
+        assertThrows(IllegalArgumentException.class, () -> SequenceRanges.parse("a-b", 10));
+        assertThrows(IllegalArgumentException.class, () -> SequenceRanges.parse(" ", 10));
+    }
+    
+    @Test
+    void testFormatCollapsesRuns() {
+        assertEquals("37, 112-118", SequenceRanges.format(Arrays.asList(118, 37, 112, 113, 114, 115, 116, 117)));
+        assertEquals("", SequenceRanges.format(Arrays.asList()));
+    }
+}
\ No newline at end of file
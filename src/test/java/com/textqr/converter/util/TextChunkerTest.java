@@ -2,16 +2,22 @@ package com.textqr.converter.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class TextChunkerTest {
     
+    // Stands in for the chunk size of a session's layout
+    private static final int CHUNK_SIZE = 400;
+    
     @Test
     void testChunkSmallText() {
         String smallText = "This is a small text that fits in one chunk.";
-        List<String> chunks = TextChunker.chunkText(smallText, false);
+        List<String> chunks = TextChunker.chunkText(smallText, false, CHUNK_SIZE);
         
         assertEquals(1, chunks.size());
         assertFalse(chunks.get(0).isEmpty());
@@ -24,13 +30,13 @@ class TextChunkerTest {
             largeText.append("This is line ").append(i).append(" of a large text file. ");
         }
         
-        List<String> chunks = TextChunker.chunkText(largeText.toString(), false);
+        List<String> chunks = TextChunker.chunkText(largeText.toString(), false, CHUNK_SIZE);
         
         assertTrue(chunks.size() > 1);
         
-        // Each chunk should not exceed maximum size
+        // Each chunk should not exceed the chunk size
         for (String chunk : chunks) {
-            assertTrue(chunk.length() <= 2803); // MAX_CHUNK_SIZE - METADATA_OVERHEAD
+            assertTrue(chunk.length() <= CHUNK_SIZE);
         }
     }
     
@@ -38,7 +44,7 @@ class TextChunkerTest {
     void testReconstructText() {
         String originalText = "This is the original text that will be chunked and reconstructed.";
         
-        List<String> chunks = TextChunker.chunkText(originalText, false);
+        List<String> chunks = TextChunker.chunkText(originalText, false, CHUNK_SIZE);
         String reconstructed = TextChunker.reconstructText(chunks, false);
         
         assertEquals(originalText, reconstructed);
@@ -50,7 +56,7 @@ class TextChunkerTest {
                             "This is a text with repetitive patterns. " +
                             "This is a text with repetitive patterns.";
         
-        List<String> chunks = TextChunker.chunkText(originalText, true);
+        List<String> chunks = TextChunker.chunkText(originalText, true, CHUNK_SIZE);
         String reconstructed = TextChunker.reconstructText(chunks, true);
         
         assertEquals(originalText, reconstructed);
@@ -58,12 +64,19 @@ class TextChunkerTest {
     
     @Test
     void testEstimateChunkCount() {
-        String text = "Sample text";
-        
-        int estimatedCount = TextChunker.estimateChunkCount(text, false);
-        List<String> actualChunks = TextChunker.chunkText(text, false);
+        for (int lines : new int[]{0, 1, 10, 100, 1000}) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < lines; i++) {
+                text.append("Estimated line ").append(i).append('\n');
+            }
+            
+            for (boolean compression : new boolean[]{false, true}) {
+                assertEquals(TextChunker.chunkText(text.toString(), compression, CHUNK_SIZE).size(),
+                    TextChunker.estimateChunkCount(text.toString(), compression, CHUNK_SIZE), lines + " lines");
+            }
+        }
         
-        assertEquals(actualChunks.size(), estimatedCount);
+        assertThrows(IllegalArgumentException.class, () -> TextChunker.estimateChunkCount("text", false, 0));
     }
     
     @Test
@@ -73,8 +86,8 @@ class TextChunkerTest {
             repetitiveText.append("AAAAAAAAAA");
         }
         
-        List<String> uncompressedChunks = TextChunker.chunkText(repetitiveText.toString(), false);
-        List<String> compressedChunks = TextChunker.chunkText(repetitiveText.toString(), true);
+        List<String> uncompressedChunks = TextChunker.chunkText(repetitiveText.toString(), false, CHUNK_SIZE);
+        List<String> compressedChunks = TextChunker.chunkText(repetitiveText.toString(), true, CHUNK_SIZE);
         
         assertTrue(compressedChunks.size() <= uncompressedChunks.size());
     }
@@ -83,7 +96,7 @@ class TextChunkerTest {
     void testUnicodeTextChunking() {
         String unicodeText = "한글 텍스트 " + "テキスト " + "🎉🎊🎈 " + "Text with emojis";
         
-        List<String> chunks = TextChunker.chunkText(unicodeText, false);
+        List<String> chunks = TextChunker.chunkText(unicodeText, false, CHUNK_SIZE);
         String reconstructed = TextChunker.reconstructText(chunks, false);
         
         assertEquals(unicodeText, reconstructed);
@@ -93,11 +106,37 @@ class TextChunkerTest {
     void testEmptyTextChunking() {
         String emptyText = "";
         
-        List<String> chunks = TextChunker.chunkText(emptyText, false);
+        List<String> chunks = TextChunker.chunkText(emptyText, false, CHUNK_SIZE);
         
         assertEquals(1, chunks.size());
         
         String reconstructed = TextChunker.reconstructText(chunks, false);
         assertEquals(emptyText, reconstructed);
     }
+    
+    @Test
+    void testBufferSlicesMatchStringSplit() {
+        for (int length : new int[]{0, 1, 2, 3, 299, 300, 301, 5000}) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) (i * 37);
+            }
+            String encoded = Base64.getEncoder().encodeToString(data);
+            
+            List<String> fromBuffer = TextChunker.splitPayload(ByteBuffer.wrap(data), 400);
+            assertEquals(TextChunker.splitPayload(encoded, 400), fromBuffer, "length " + length);
+            assertEquals(encoded.length(), TextChunker.encodedLength(length));
+            assertArrayEquals(data, TextChunker.decodePayload(fromBuffer));
+        }
+        
+        assertThrows(IllegalArgumentException.class, () -> TextChunker.splitPayload(ByteBuffer.wrap(new byte[10]), 10));
+    }
+    
+    @Test
+    void testDecodePayloadAcrossUnalignedChunks() {
+        byte[] data = "Chunks that do not end on a Base64 quantum".getBytes(StandardCharsets.UTF_8);
+        List<String> chunks = TextChunker.splitPayload(Base64.getEncoder().encodeToString(data), 7);
+        
+        assertArrayEquals(data, TextChunker.decodePayload(chunks));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.textqr.converter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextNormalizerTest {
+    
+    private static String reference(String text) {
+        return text.replaceAll("\r\n", "\n").replaceAll("\r", "\n").replace("\0", "").trim();
+    }
+    
+    @Test
+    void testDefaultMatchesChainedReplacements() {
+        String[] samples = {
+            "",
+            "   ",
+            "line1\r\nline2\rline3\n",
+            "\0\0 leading nul\0 and trailing \t\r\n",
+            "ends with cr\r",
+            "a\r\r\nb",
+            "한글\r\n텍스트 🎉  "
+        };
+        
+        for (String sample : samples) {
+            assertEquals(reference(sample), TextNormalizer.DEFAULT.normalize(sample), sample);
+        }
+    }
+    
+    @Test
+    void testReaderMatchesCharSequence() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("  line ").append(i).append("\r\n");
+        }
+        
+        String fromReader = TextNormalizer.DEFAULT.normalize(new StringReader(text.toString()), text.length());
+        
+        assertEquals(reference(text.toString()), fromReader);
+    }
+    
+    @Test
+    void testUtf8OutputMatchesEncodedString() throws IOException {
+        String[] samples = {
+            "",
+            "line1\r\nline2\rline3\n",
+            "한글\r\n텍스트 🎉  ",
+            "unpaired \uD800 high and \uDC00 low surrogates\uD83D",
+            "caf\u00e9 \u20ac 2\u00b2"
+        };
+        
+        for (String sample : samples) {
+            byte[] expected = TextNormalizer.DEFAULT.normalize(sample).getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, TextNormalizer.DEFAULT.normalizeToUtf8(new StringReader(sample), 16), sample);
+        }
+    }
+    
+    @Test
+    void testCollapseWhitespace() {
+        TextNormalizer normalizer = new TextNormalizer(true, false, false);
+        
+        assertEquals("a b c\nd e", normalizer.normalize("a  \t b c\nd\t\te"));
+    }
+    
+    @Test
+    void testStripAnsiEscapes() {
+        TextNormalizer normalizer = new TextNormalizer(false, true, false);
+        
+        assertEquals("ERROR failed\nok", normalizer.normalize("\u001B[31mERROR\u001B[0m failed\n\u001B[1;32mok\u001B[m"));
+    }
+    
+    @Test
+    void testStripTimestampPrefixes() {
+        TextNormalizer normalizer = new TextNormalizer(false, false, true);
+        String log = "2024-03-01 12:00:01.123 INFO started\n"
+            + "[2024-03-01T12:00:02,456Z] WARN slow\n"
+            + "12:00:03 DEBUG tick\n"
+            + "no timestamp here 12:00:04";
+        
+        assertEquals("INFO started\nWARN slow\nDEBUG tick\nno timestamp here 12:00:04", normalizer.normalize(log));
+    }
+}
\ No newline at end of file